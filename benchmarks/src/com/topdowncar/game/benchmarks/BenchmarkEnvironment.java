@@ -0,0 +1,32 @@
+package com.topdowncar.game.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Preparing the minimum of LibGDX needed by benchmarks, native libraries and file access, without
+ * starting an application thread. Benchmarks are run from the assets directory so map is found
+ */
+public class BenchmarkEnvironment {
+
+    private static boolean sInitialised;
+
+    /**
+     * Main constructor set to private to disable object creation by the user
+     */
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Initialising natives and {@link Gdx#files}, only once per JVM
+     */
+    public static synchronized void init() {
+        if (sInitialised) {
+            return;
+        }
+        GdxNativesLoader.load();
+        Gdx.files = new HeadlessFiles();
+        sInitialised = true;
+    }
+}
@@ -0,0 +1,64 @@
+package com.topdowncar.game.benchmarks;
+
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.entities.VehicleSnapshot;
+import com.topdowncar.game.entities.Wheel;
+import com.topdowncar.game.simulation.Simulation;
+import com.topdowncar.game.simulation.WeavingInputScript;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.topdowncar.game.Constants.STEP_TIME;
+
+/**
+ * Cost of {@link com.topdowncar.game.BodyHolder#update(float)} for one body, measured on a rear
+ * wheel of a car that is already moving so drift logic is exercised. Simulation state is restored
+ * from a {@link VehicleSnapshot} before every call, since updating again and again without
+ * stepping the world would soon leave the wheel without sideways speed to reduce
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BodyHolderBenchmark {
+
+    private static final int WARMUP_STEPS = 300;
+
+    private Simulation mSimulation;
+    private Wheel mWheel;
+    private final VehicleSnapshot mSnapshot = new VehicleSnapshot();
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        mSimulation = new Simulation(1, new WeavingInputScript());
+        mSimulation.run(WARMUP_STEPS);
+        mSimulation.saveSnapshot(mSnapshot);
+        final Car car = mSimulation.getVehicles().getCar(0);
+        mWheel = car.getWheels().get(Wheel.DOWN_LEFT);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        mSimulation.restoreSnapshot(mSnapshot);
+    }
+
+    @Benchmark
+    public void update() {
+        mWheel.update(STEP_TIME);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSimulation.dispose();
+    }
+}
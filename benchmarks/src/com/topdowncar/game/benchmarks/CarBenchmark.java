@@ -0,0 +1,90 @@
+package com.topdowncar.game.benchmarks;
+
+import com.badlogic.gdx.physics.box2d.World;
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.entities.CarSpec;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.entities.VehicleSnapshot;
+import com.topdowncar.game.tools.MapLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.topdowncar.game.Constants.GRAVITY;
+import static com.topdowncar.game.Constants.POSITION_ITERATION;
+import static com.topdowncar.game.Constants.STEP_TIME;
+import static com.topdowncar.game.Constants.VELOCITY_ITERATION;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_FORWARD;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_LEFT;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+
+/**
+ * Cost of {@link Car#update(float)} for one car, without the world step. Car is first driven
+ * until it reaches the wanted state: going straight (gripping, sideways speed is killed) or
+ * turning at speed (drifting, sideways speed is only reduced). Updating again and again without
+ * stepping the world would kill the sideways speed after a few calls, so that state is saved in a
+ * {@link VehicleSnapshot} and restored before every call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CarBenchmark {
+
+    private static final int WARMUP_STEPS = 60;
+
+    @Param({"2WD", "4WD"})
+    public String wheelDrive;
+
+    @Param({"gripping", "drifting"})
+    public String handling;
+
+    private World mWorld;
+    private MapLoader mMapLoader;
+    private VehicleManager mVehicles;
+    private Car mCar;
+    private final VehicleSnapshot mSnapshot = new VehicleSnapshot();
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        mWorld = new World(GRAVITY, true);
+        mMapLoader = new MapLoader(mWorld);
+        mVehicles = new VehicleManager(mWorld, mMapLoader,
+                CarSpec.createDefault(35.0f, 0.8f, 80, "4WD".equals(wheelDrive) ? Car.DRIVE_4WD : Car.DRIVE_2WD));
+        mCar = mVehicles.getCar(mVehicles.addCar(0, 0));
+        mCar.setDriveDirection(DRIVE_DIRECTION_FORWARD);
+        mCar.setTurnDirection("drifting".equals(handling) ? TURN_DIRECTION_LEFT : TURN_DIRECTION_NONE);
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            mCar.update(STEP_TIME);
+            mWorld.step(STEP_TIME, VELOCITY_ITERATION, POSITION_ITERATION);
+        }
+        mSnapshot.save(mVehicles, WARMUP_STEPS);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        mSnapshot.restore(mVehicles);
+    }
+
+    @Benchmark
+    public void update() {
+        mCar.update(STEP_TIME);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mVehicles.dispose();
+        mWorld.dispose();
+        mMapLoader.dispose();
+    }
+}
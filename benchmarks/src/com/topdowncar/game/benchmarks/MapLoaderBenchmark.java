@@ -0,0 +1,71 @@
+package com.topdowncar.game.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.physics.box2d.World;
+import com.topdowncar.game.tools.BakedMap;
+import com.topdowncar.game.tools.MapCache;
+import com.topdowncar.game.tools.MapData;
+import com.topdowncar.game.tools.MapLoader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.topdowncar.game.Constants.GRAVITY;
+import static com.topdowncar.game.Constants.MAP_NAME;
+
+/**
+ * Time needed to construct {@link MapLoader}. Cold load parses the Tiled map every time, baked
+ * load reads the {@link BakedMap} file every time, while cached loads only create wall bodies
+ * from {@link MapCache}, either one body per wall or merged walls on one body. Each invocation gets a fresh world so wall bodies don't pile up
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapLoaderBenchmark {
+
+    @Param({"cold", "baked", "cached", "merged"})
+    public String mode;
+
+    private World mWorld;
+    private MapLoader mMapLoader;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        BenchmarkEnvironment.init();
+        mWorld = new World(GRAVITY, true);
+    }
+
+    @Benchmark
+    public MapLoader load() {
+        final MapData data;
+        if ("cold".equals(mode)) {
+            final TiledMap map = new TmxMapLoader().load(MAP_NAME);
+            data = MapData.fromTiledMap(map);
+            map.dispose();
+        } else if ("baked".equals(mode)) {
+            data = BakedMap.load(Gdx.files.internal(BakedMap.getBakedName(MAP_NAME)));
+        } else {
+            data = MapCache.get(MAP_NAME);
+        }
+        mMapLoader = new MapLoader(mWorld, data, "merged".equals(mode));
+        return mMapLoader;
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        mMapLoader.dispose();
+        mWorld.dispose();
+    }
+}
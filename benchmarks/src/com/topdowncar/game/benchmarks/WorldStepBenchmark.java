@@ -0,0 +1,100 @@
+package com.topdowncar.game.benchmarks;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.topdowncar.game.simulation.Simulation;
+import com.topdowncar.game.simulation.WeavingInputScript;
+import com.topdowncar.game.tools.MapCache;
+import com.topdowncar.game.tools.MapData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.topdowncar.game.Constants.MAP_NAME;
+
+/**
+ * Cost of one full simulation step: car logic for every car plus
+ * {@link com.badlogic.gdx.physics.box2d.World#step(float, int, int)}. Stock map can be repeated
+ * in a square of map tiles to get a big map. Walls are created up front either merged, as the
+ * game does by default, or separate, or are separate and streamed in chunks around cars, to
+ * compare broadphase cost of each on small and big maps
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorldStepBenchmark {
+
+    private static final int WARMUP_STEPS = 120;
+
+    @Param({"1", "10", "40", "100"})
+    public int carCount;
+
+    @Param({"1", "8"})
+    public int mapTiles;
+
+    @Param({"merged", "separate", "streamed"})
+    public String walls;
+
+    private Simulation mSimulation;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        final MapData map = MapCache.get(MAP_NAME);
+        mSimulation = new Simulation(carCount, new WeavingInputScript(), mapTiles > 1 ? tile(map, mapTiles) : map,
+                "merged".equals(walls), "streamed".equals(walls));
+        mSimulation.run(WARMUP_STEPS);
+    }
+
+    @Benchmark
+    public void step() {
+        mSimulation.step();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mSimulation.dispose();
+    }
+
+    /**
+     * Repeating walls of the map in a square of tiles, keeping spawns of the first tile only
+     * @param map map to repeat
+     * @param tiles number of tiles along each side
+     * @return new map data
+     */
+    private static MapData tile(final MapData map, final int tiles) {
+        final Rectangle bounds = map.getBounds(new Rectangle());
+        final Rectangle rectangle = new Rectangle();
+        final int wallCount = map.getWallCount(false);
+        final float[] walls = new float[wallCount * 4 * tiles * tiles];
+        int index = 0;
+        for (int x = 0; x < tiles; x++) {
+            for (int y = 0; y < tiles; y++) {
+                for (int i = 0; i < wallCount; i++) {
+                    map.getWall(i, false, rectangle);
+                    walls[index++] = rectangle.x + x * bounds.width;
+                    walls[index++] = rectangle.y + y * bounds.height;
+                    walls[index++] = rectangle.width;
+                    walls[index++] = rectangle.height;
+                }
+            }
+        }
+        final float[] spawns = new float[map.getSpawnCount() * 4];
+        for (int i = 0; i < map.getSpawnCount(); i++) {
+            map.getSpawn(i, rectangle);
+            spawns[i * 4] = rectangle.x;
+            spawns[i * 4 + 1] = rectangle.y;
+            spawns[i * 4 + 2] = rectangle.width;
+            spawns[i * 4 + 3] = rectangle.height;
+        }
+        return new MapData(walls, spawns);
+    }
+}
@@ -6,20 +6,37 @@ import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.World;
 import com.topdowncar.game.tools.ShapeFactory;
 
+import java.nio.ByteBuffer;
+
+import static com.topdowncar.game.Constants.PPM;
+
 public abstract class BodyHolder {
 
     protected static final int DIRECTION_NONE = 0;
     protected static final int DIRECTION_FORWARD = 1;
     protected static final int DIRECTION_BACKWARD = 2;
 
-    private static final float DRIFT_OFFSET = 1.0f;
+    public static final float DRIFT_OFFSET = 1.0f;
 
-    private Vector2 mForwardSpeed;
-    private Vector2 mLateralSpeed;
+    /**
+     * Number of bytes written by {@link #saveState(ByteBuffer)}: position, angle, linear and
+     * angular velocity as floats, and one byte for awake flag
+     */
+    public static final int STATE_SIZE = 6 * 4 + 1;
+
+    private static final Vector2 FORWARD_NORMAL = new Vector2(0, 1);
+    private static final Vector2 LATERAL_NORMAL = new Vector2(1, 0);
+    private static final Vector2 LOCAL_CENTER = new Vector2(0, 0);
+
+    private final Vector2 mForwardSpeed = new Vector2();
+    private final Vector2 mLateralSpeed = new Vector2();
+    private final Vector2 mPreviousPosition = new Vector2();
+    private float mPreviousAngle;
+    private final Vector2 mHalfSize = new Vector2();
 
     private final Body mBody;
     private float mDrift = 1;
-    private final int mId;
+    private int mId;
 
     /**
      * Most base constructor used if we already have a body that we need to control by the logic
@@ -29,6 +46,9 @@ public abstract class BodyHolder {
     public BodyHolder(final Body mBody) {
         this.mBody = mBody;
         mId = -1;
+        mBody.setUserData(this);
+        ShapeFactory.getHalfSize(mBody, mHalfSize);
+        rememberTransform();
     }
 
     /**
@@ -39,11 +59,16 @@ public abstract class BodyHolder {
      * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      * @param density rectangle density
      * @param sensor is fixture a sensor
+     * @param entity entity type setting collision filter, one of ShapeFactory.ENTITY_ values
      * @param id unique ID
      */
-    public BodyHolder(final Vector2 position, final Vector2 size, final BodyDef.BodyType type, final World world, float density, final boolean sensor, final int id) {
-        mBody = ShapeFactory.createRectangle(position, size, type, world, density, sensor);
+    public BodyHolder(final Vector2 position, final Vector2 size, final BodyDef.BodyType type, final World world, float density, final boolean sensor,
+                      final int entity, final int id) {
+        mBody = ShapeFactory.createRectangle(position, size, type, world, density, sensor, entity);
         this.mId = id;
+        mBody.setUserData(this);
+        mHalfSize.set(size.x / PPM, size.y / PPM);
+        rememberTransform();
     }
 
     /**
@@ -52,9 +77,9 @@ public abstract class BodyHolder {
      */
     public void update(final float delta) {
         if (mDrift < 1) {
-            mForwardSpeed = getForwardVelocity();
-            mLateralSpeed = getLateralVelocity();
-            if (mLateralSpeed.len() < DRIFT_OFFSET && mId > 1) {
+            getForwardVelocity(mForwardSpeed);
+            getLateralVelocity(mLateralSpeed);
+            if (mLateralSpeed.len() < DRIFT_OFFSET && canKillDrift()) {
                 killDrift();
             } else {
                 handleDrift();
@@ -70,6 +95,113 @@ public abstract class BodyHolder {
         this.mDrift = drift;
     }
 
+    /**
+     * Getting body drift
+     * @return drift value (0 - no drift, 1 - total drift)
+     */
+    public float getDrift() {
+        return mDrift;
+    }
+
+    /**
+     * Checking if sideways velocity of this body is killed once it gets small enough. Not done by
+     * default, {@link com.topdowncar.game.entities.Wheel} takes it from its spec
+     * @return true if small sideways velocity is killed
+     */
+    public boolean canKillDrift() {
+        return false;
+    }
+
+    /**
+     * Remembering current body position and angle, so they can be interpolated with the state after
+     * the next physics step. Should be called right before {@link World#step(float, int, int)}
+     */
+    public void saveTransform() {
+        rememberTransform();
+    }
+
+    /**
+     * Storing current body transform as previous one. Kept private so it is safe to call from the
+     * constructor, before subclasses are initialised
+     */
+    private void rememberTransform() {
+        mPreviousPosition.set(mBody.getPosition());
+        mPreviousAngle = mBody.getAngle();
+    }
+
+    /**
+     * Writing body position, angle, velocities and awake flag to the buffer
+     * @param out buffer to write to, with at least {@link #STATE_SIZE} bytes remaining
+     */
+    public void saveState(final ByteBuffer out) {
+        final Vector2 position = mBody.getPosition();
+        out.putFloat(position.x).putFloat(position.y).putFloat(mBody.getAngle());
+        final Vector2 velocity = mBody.getLinearVelocity();
+        out.putFloat(velocity.x).putFloat(velocity.y).putFloat(mBody.getAngularVelocity());
+        out.put(mBody.isAwake() ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Reading state written by {@link #saveState(ByteBuffer)} and applying it to the body in place.
+     * Previous transform is set to the restored one, so there is nothing to interpolate
+     * @param in buffer to read from
+     */
+    public void restoreState(final ByteBuffer in) {
+        final float x = in.getFloat();
+        final float y = in.getFloat();
+        mBody.setTransform(x, y, in.getFloat());
+        final float velocityX = in.getFloat();
+        final float velocityY = in.getFloat();
+        mBody.setLinearVelocity(velocityX, velocityY);
+        mBody.setAngularVelocity(in.getFloat());
+        mBody.setAwake(in.get() != 0);
+        rememberTransform();
+    }
+
+    /**
+     * Getting body position interpolated between the previous and current physics step
+     * @param alpha interpolation value (0 - previous step, 1 - current step)
+     * @param out vector in which to store interpolated position
+     * @return out vector, for chaining
+     */
+    public Vector2 getInterpolatedPosition(final float alpha, final Vector2 out) {
+        return out.set(mPreviousPosition).lerp(mBody.getPosition(), alpha);
+    }
+
+    /**
+     * Getting body angle interpolated between the previous and current physics step
+     * @param alpha interpolation value (0 - previous step, 1 - current step)
+     * @return interpolated angle in radians
+     */
+    public float getInterpolatedAngle(final float alpha) {
+        return mPreviousAngle + (mBody.getAngle() - mPreviousAngle) * alpha;
+    }
+
+    /**
+     * Returning half of the body rectangle size, used for drawing
+     * @return half size in world units
+     */
+    public Vector2 getHalfSize() {
+        return mHalfSize;
+    }
+
+    /**
+     * Returning ID of this body holder. Holder is also stored as user data of its body, so the ID
+     * can be found from a fixture, for example in contact callbacks
+     * @return ID given on creation or with {@link #setId(int)}, -1 if none was given
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * Setting ID of this body holder, used when the same holder is reused for another entity
+     * @param id new ID
+     */
+    public void setId(final int id) {
+        this.mId = id;
+    }
+
     /**
      * Returning body assigned to this body holder
      * @return body object
@@ -79,22 +211,19 @@ public abstract class BodyHolder {
     }
 
     /**
-     * Handling drift
+     * Handling drift, using forward and lateral speed calculated in {@link #update(float)}
      */
     private void handleDrift() {
-        final Vector2 forwardSpeed = getForwardVelocity();
-        final Vector2 lateralSpeed = getLateralVelocity();
-        mBody.setLinearVelocity(forwardSpeed.x + lateralSpeed.x * mDrift, forwardSpeed.y + lateralSpeed.y * mDrift);
+        mBody.setLinearVelocity(mForwardSpeed.x + mLateralSpeed.x * mDrift, mForwardSpeed.y + mLateralSpeed.y * mDrift);
     }
 
     /**
      * Get extracted forward velocity vector
-     * @return extracted forward vector
+     * @param out vector in which to store extracted forward velocity
+     * @return out vector, for chaining
      */
-    private Vector2 getForwardVelocity() {
-        final Vector2 currentNormal = mBody.getWorldVector(new Vector2(0, 1));
-        final float dotProduct = currentNormal.dot(mBody.getLinearVelocity());
-        return multiply(dotProduct, currentNormal);
+    private Vector2 getForwardVelocity(final Vector2 out) {
+        return extractVelocity(FORWARD_NORMAL, out);
     }
 
     /**
@@ -106,12 +235,24 @@ public abstract class BodyHolder {
 
     /**
      * Get extracted sideways velocity vector
-     * @return extracted sideways velocity vector
+     * @param out vector in which to store extracted sideways velocity
+     * @return out vector, for chaining
+     */
+    private Vector2 getLateralVelocity(final Vector2 out) {
+        return extractVelocity(LATERAL_NORMAL, out);
+    }
+
+    /**
+     * Projecting body linear velocity on to the given local axis. Body getters return vectors
+     * reused by the body itself, so result is copied to the out vector straight away
+     * @param localNormal local axis on which to project velocity
+     * @param out vector in which to store the result
+     * @return out vector, for chaining
      */
-    private Vector2 getLateralVelocity() {
-        final Vector2 currentNormal = mBody.getWorldVector(new Vector2(1, 0));
-        final float dotProduct = currentNormal.dot(mBody.getLinearVelocity());
-        return multiply(dotProduct, currentNormal);
+    private Vector2 extractVelocity(final Vector2 localNormal, final Vector2 out) {
+        out.set(mBody.getWorldVector(localNormal));
+        final float dotProduct = out.dot(mBody.getLinearVelocity());
+        return multiply(dotProduct, out);
     }
 
     /**
@@ -120,9 +261,10 @@ public abstract class BodyHolder {
      */
     public int direction() {
         final float tolerance = 0.2f;
-        if (getLocalVelocity().y < -tolerance) {
+        final float localVelocityY = getLocalVelocity().y;
+        if (localVelocityY < -tolerance) {
             return DIRECTION_BACKWARD;
-        } else if (getLocalVelocity().y > tolerance) {
+        } else if (localVelocityY > tolerance) {
             return DIRECTION_FORWARD;
         } else {
             return DIRECTION_NONE;
@@ -130,20 +272,21 @@ public abstract class BodyHolder {
     }
 
     /**
-     * Getting local velocity of a body
+     * Getting local velocity of a body. Returned vector is owned by the body and is valid only
+     * until the next body call
      * @return local velocity vector
      */
     private Vector2 getLocalVelocity() {
-        return mBody.getLocalVector(mBody.getLinearVelocityFromLocalPoint(new Vector2(0, 0)));
+        return mBody.getLocalVector(mBody.getLinearVelocityFromLocalPoint(LOCAL_CENTER));
     }
 
     /**
-     * Multiplying two vectors
+     * Multiplying vector in place
      * @param a multiplier
      * @param v vector to multiply
      * @return multiplied vector
      */
     private Vector2 multiply(float a, Vector2 v) {
-        return new Vector2(a * v.x, a * v.y);
+        return v.scl(a);
     }
 }
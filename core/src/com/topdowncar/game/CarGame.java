@@ -1,12 +1,38 @@
 package com.topdowncar.game;
 
 import com.badlogic.gdx.Game;
+import com.topdowncar.game.screens.NetworkPlayScreen;
 import com.topdowncar.game.screens.PlayScreen;
 
 public class CarGame extends Game {
+
+    private final String mServerHost;
+    private final int mServerPort;
+
+    /**
+     * Constructor for playing alone, without a server
+     */
+    public CarGame() {
+        this(null, 0);
+    }
+
+    /**
+     * Constructor for playing on a {@link com.topdowncar.game.network.GameServer}
+     * @param serverHost server host name or address, or null to play alone
+     * @param serverPort server port
+     */
+    public CarGame(final String serverHost, final int serverPort) {
+        this.mServerHost = serverHost;
+        this.mServerPort = serverPort;
+    }
+
     @Override
     public void create() {
-        setScreen(new PlayScreen());
+        if (mServerHost != null) {
+            setScreen(new NetworkPlayScreen(mServerHost, mServerPort));
+        } else {
+            setScreen(new PlayScreen());
+        }
     }
 
     @Override
@@ -18,8 +18,20 @@ public class Constants {
 
     public static final int VELOCITY_ITERATION = 6;
     public static final int POSITION_ITERATION = 2;
+    public static final int CHEAP_VELOCITY_ITERATION = 3;
+    public static final int CHEAP_POSITION_ITERATION = 1;
+
+    public static final float STEP_TIME = 1 / 60f;
+    public static final int MAX_STEPS = 5;
 
     public static final String MAP_NAME = "new_map.tmx";
+    public static final String CAR_SPEC_FILE = "cars.json";
+    public static final String DEFAULT_CAR = "default";
+
+    public static final float GRID_CELL_SIZE = 8f;
+    public static final float WALL_CHUNK_SIZE = 32f;
+    public static final float WALL_LOAD_RADIUS = 24f;
+    public static final float WALL_UNLOAD_RADIUS = 32f;
 
 
 }
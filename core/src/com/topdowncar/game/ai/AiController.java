@@ -0,0 +1,317 @@
+package com.topdowncar.game.ai;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.RayCastCallback;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.entities.VehicleManager;
+
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_BACKWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_FORWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_LEFT;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_RIGHT;
+
+/**
+ * AI drivers for cars in a {@link VehicleManager}. Every driver follows {@link RacingLine},
+ * slows down before corners, and steers away from walls it senses with a fan of rays. Drivers
+ * think only every {@link #setUpdateInterval(int)} steps, and are split in to groups so the same
+ * number of them thinks on every step; cars keep the last input in between. Rays of all drivers
+ * thinking in a step are cast together before any decision is made, with one reused callback,
+ * and distances are kept in one flat array
+ */
+public class AiController {
+
+    private static final float[] RAY_ANGLES = {
+            60 * MathUtils.degreesToRadians,
+            25 * MathUtils.degreesToRadians,
+            0,
+            -25 * MathUtils.degreesToRadians,
+            -60 * MathUtils.degreesToRadians};
+    private static final int RAY_COUNT = RAY_ANGLES.length;
+    private static final int RAY_LEFT = 1;
+    private static final int RAY_FRONT = 2;
+    private static final int RAY_RIGHT = 3;
+    private static final int RAY_SIDE_LEFT = 0;
+    private static final int RAY_SIDE_RIGHT = 4;
+    private static final float RAY_LENGTH = 15f;
+    private static final int DEFAULT_UPDATE_INTERVAL = 4;
+    private static final int SEARCH_WINDOW = 10;
+    private static final int LOOKAHEAD_POINTS = 3;
+    private static final float LOOKAHEAD_PER_SPEED = 0.15f;
+    private static final float STEER_DEAD_ZONE = 4 * MathUtils.degreesToRadians;
+    private static final float AVOID_DISTANCE = 4f;
+    private static final float SIDE_AVOID_DISTANCE = 2f;
+    private static final float MAX_SPEED = 30f;
+    private static final float MIN_CORNER_SPEED = 8f;
+    private static final float SHARP_TURN = 1.2f;
+    private static final float BRAKE_DECELERATION = 10f;
+    private static final int BRAKE_LOOKAHEAD_POINTS = 20;
+    private static final float AVOID_TIE = 0.5f;
+    private static final float STUCK_SPEED = 1f;
+    private static final int STUCK_STEPS = 40;
+    private static final int REVERSE_STEPS = 45;
+
+    private final World mWorld;
+    private final VehicleManager mVehicles;
+    private final RacingLine mLine;
+    private final WallRayCallback mCallback = new WallRayCallback();
+    private final Vector2 mRayStart = new Vector2();
+    private final Vector2 mRayEnd = new Vector2();
+    private final IntArray mSlots = new IntArray();
+    private final IntArray mThinking = new IntArray();
+    private boolean[] mDriven = new boolean[0];
+    private int[] mProgress = new int[0];
+    private int[] mStuckSteps = new int[0];
+    private int[] mReverseSteps = new int[0];
+    private float[] mRayDistances = new float[0];
+    private int mUpdateInterval = DEFAULT_UPDATE_INTERVAL;
+    private int mStep;
+
+    /**
+     * Main AiController constructor
+     * @param world world holding the cars, used to cast rays
+     * @param vehicles {@link VehicleManager} holding the cars
+     * @param line racing line of the map
+     */
+    public AiController(final World world, final VehicleManager vehicles, final RacingLine line) {
+        this.mWorld = world;
+        this.mVehicles = vehicles;
+        this.mLine = line;
+    }
+
+    /**
+     * Giving the car to an AI driver
+     * @param slot slot of the car in {@link VehicleManager}
+     */
+    public void addDriver(final int slot) {
+        mVehicles.getCar(slot);
+        if (isDriving(slot)) {
+            return;
+        }
+        if (slot >= mDriven.length) {
+            final boolean[] driven = new boolean[Math.max(slot + 1, mDriven.length * 2)];
+            System.arraycopy(mDriven, 0, driven, 0, mDriven.length);
+            mDriven = driven;
+        }
+        mDriven[slot] = true;
+        final int driver = mSlots.size;
+        mSlots.add(slot);
+        if (driver >= mProgress.length) {
+            final int capacity = Math.max(driver + 1, mProgress.length * 2);
+            mProgress = grow(mProgress, capacity);
+            mStuckSteps = grow(mStuckSteps, capacity);
+            mReverseSteps = grow(mReverseSteps, capacity);
+            final float[] distances = new float[capacity * RAY_COUNT];
+            System.arraycopy(mRayDistances, 0, distances, 0, mRayDistances.length);
+            mRayDistances = distances;
+        }
+        mProgress[driver] = -1;
+        mStuckSteps[driver] = 0;
+        mReverseSteps[driver] = 0;
+    }
+
+    /**
+     * Taking the car away from its AI driver. Input of the car is left as it was
+     * @param slot slot of the car in {@link VehicleManager}
+     */
+    public void removeDriver(final int slot) {
+        final int driver = mSlots.indexOf(slot);
+        if (driver < 0) {
+            return;
+        }
+        mDriven[slot] = false;
+        // move the last driver in to the place of removed one
+        final int last = mSlots.size - 1;
+        mSlots.set(driver, mSlots.get(last));
+        mProgress[driver] = mProgress[last];
+        mStuckSteps[driver] = mStuckSteps[last];
+        mReverseSteps[driver] = mReverseSteps[last];
+        System.arraycopy(mRayDistances, last * RAY_COUNT, mRayDistances, driver * RAY_COUNT, RAY_COUNT);
+        mSlots.pop();
+    }
+
+    /**
+     * Letting drivers whose turn it is sense the walls and set input of their cars. Called once
+     * per physics step, before {@link VehicleManager#update(float)}
+     */
+    public void update() {
+        final int group = mStep++ % mUpdateInterval;
+        mThinking.clear();
+        for (int driver = group; driver < mSlots.size; driver += mUpdateInterval) {
+            mThinking.add(driver);
+        }
+        for (int i = 0; i < mThinking.size; i++) {
+            sense(mThinking.get(i));
+        }
+        for (int i = 0; i < mThinking.size; i++) {
+            drive(mThinking.get(i));
+        }
+    }
+
+    /**
+     * Casting fan of rays from the car and storing distance to the nearest wall along every ray
+     * @param driver driver index
+     */
+    private void sense(final int driver) {
+        final Body body = mVehicles.getCar(mSlots.get(driver)).getBody();
+        final float heading = body.getAngle() + MathUtils.PI / 2;
+        mRayStart.set(body.getPosition());
+        for (int r = 0; r < RAY_COUNT; r++) {
+            final float angle = heading + RAY_ANGLES[r];
+            mRayEnd.set(mRayStart.x + MathUtils.cos(angle) * RAY_LENGTH, mRayStart.y + MathUtils.sin(angle) * RAY_LENGTH);
+            mCallback.mFraction = 1;
+            mWorld.rayCast(mCallback, mRayStart, mRayEnd);
+            mRayDistances[driver * RAY_COUNT + r] = mCallback.mFraction * RAY_LENGTH;
+        }
+    }
+
+    /**
+     * Choosing input of the car from the racing line and the sensed walls
+     * @param driver driver index
+     */
+    private void drive(final int driver) {
+        final int slot = mSlots.get(driver);
+        final Body body = mVehicles.getCar(slot).getBody();
+        final Vector2 position = body.getPosition();
+        final float speed = body.getLinearVelocity().len();
+        final float heading = body.getAngle() + MathUtils.PI / 2;
+        final float forwardSpeed = body.getLinearVelocity().x * MathUtils.cos(heading) + body.getLinearVelocity().y * MathUtils.sin(heading);
+        final int rays = driver * RAY_COUNT;
+        final float front = mRayDistances[rays + RAY_FRONT];
+
+        mProgress[driver] = mLine.findNearest(position.x, position.y, mProgress[driver], SEARCH_WINDOW);
+        final int target = mProgress[driver] + LOOKAHEAD_POINTS + (int) (speed * LOOKAHEAD_PER_SPEED);
+        final float targetAngle = RacingLine.wrapAngle(
+                MathUtils.atan2(mLine.getY(target) - position.y, mLine.getX(target) - position.x) - heading);
+
+        // pushing forward without going forward, like with the nose against a wall, so back out
+        // turning the other way
+        if (mReverseSteps[driver] > 0) {
+            mReverseSteps[driver] -= mUpdateInterval;
+            mVehicles.setInput(slot, DRIVE_DIRECTION_BACKWARD, targetAngle > 0 ? TURN_DIRECTION_RIGHT : TURN_DIRECTION_LEFT);
+            return;
+        }
+        if (forwardSpeed < STUCK_SPEED && mVehicles.getDriveInput(slot) == DRIVE_DIRECTION_FORWARD) {
+            mStuckSteps[driver] += mUpdateInterval;
+            if (mStuckSteps[driver] >= STUCK_STEPS) {
+                mStuckSteps[driver] = 0;
+                mReverseSteps[driver] = REVERSE_STEPS;
+            }
+        } else {
+            mStuckSteps[driver] = 0;
+        }
+
+        final float left = Math.min(mRayDistances[rays + RAY_LEFT], front);
+        final float right = Math.min(mRayDistances[rays + RAY_RIGHT], front);
+        final int turnDirection;
+        if (Math.min(left, right) < AVOID_DISTANCE && Math.abs(left - right) > AVOID_TIE) {
+            turnDirection = left < right ? TURN_DIRECTION_RIGHT : TURN_DIRECTION_LEFT;
+        } else if (mRayDistances[rays + RAY_SIDE_LEFT] < SIDE_AVOID_DISTANCE) {
+            turnDirection = TURN_DIRECTION_RIGHT;
+        } else if (mRayDistances[rays + RAY_SIDE_RIGHT] < SIDE_AVOID_DISTANCE) {
+            turnDirection = TURN_DIRECTION_LEFT;
+        } else if (targetAngle > STEER_DEAD_ZONE) {
+            turnDirection = TURN_DIRECTION_LEFT;
+        } else if (targetAngle < -STEER_DEAD_ZONE) {
+            turnDirection = TURN_DIRECTION_RIGHT;
+        } else {
+            turnDirection = TURN_DIRECTION_NONE;
+        }
+
+        // slow enough to brake down to the corner speed of every point ahead, and to stop before
+        // the wall in front
+        float wantedSpeed = (float) Math.sqrt(2 * BRAKE_DECELERATION * front);
+        for (int i = 0; i < BRAKE_LOOKAHEAD_POINTS; i++) {
+            final float cornerSpeed = MathUtils.lerp(MAX_SPEED, MIN_CORNER_SPEED,
+                    Math.min(mLine.getTurn(mProgress[driver] + i) / SHARP_TURN, 1));
+            final float distance = i * mLine.getSpacing();
+            wantedSpeed = Math.min(wantedSpeed, (float) Math.sqrt(cornerSpeed * cornerSpeed + 2 * BRAKE_DECELERATION * distance));
+        }
+        wantedSpeed = Math.max(wantedSpeed, MIN_CORNER_SPEED);
+        final int driveDirection;
+        if (speed > wantedSpeed * 1.1f) {
+            driveDirection = DRIVE_DIRECTION_BACKWARD;
+        } else if (speed < wantedSpeed) {
+            driveDirection = DRIVE_DIRECTION_FORWARD;
+        } else {
+            driveDirection = DRIVE_DIRECTION_NONE;
+        }
+        mVehicles.setInput(slot, driveDirection, turnDirection);
+    }
+
+    /**
+     * Setting how often each driver thinks. Sensing cost per step falls with the interval, but
+     * drivers react later
+     * @param steps physics steps between two updates of the same driver
+     */
+    public void setUpdateInterval(final int steps) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("Update interval must be at least 1, got " + steps);
+        }
+        this.mUpdateInterval = steps;
+    }
+
+    /**
+     * Checking if the car is driven by AI
+     * @param slot slot of the car
+     * @return true if AI drives the car
+     */
+    public boolean isDriving(final int slot) {
+        return slot < mDriven.length && mDriven[slot];
+    }
+
+    /**
+     * Returning slots of all AI driven cars. Array is owned by the controller and must not be
+     * modified
+     * @return driven car slots
+     */
+    public IntArray getSlots() {
+        return mSlots;
+    }
+
+    /**
+     * Returning racing line point the car was nearest to at its last update
+     * @param slot slot of the car
+     * @return point index, or -1 if it didn't update yet
+     */
+    public int getProgress(final int slot) {
+        final int driver = mSlots.indexOf(slot);
+        return driver < 0 ? -1 : mProgress[driver];
+    }
+
+    /**
+     * Copying int array to a bigger one
+     * @param array array to copy
+     * @param capacity new array size
+     * @return new array
+     */
+    private static int[] grow(final int[] array, final int capacity) {
+        final int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * Ray callback that only looks at static bodies, so cars don't see their own chassis and
+     * wheels, and keeps the nearest hit
+     */
+    private static class WallRayCallback implements RayCastCallback {
+
+        private float mFraction;
+
+        @Override
+        public float reportRayFixture(final Fixture fixture, final Vector2 point, final Vector2 normal, final float fraction) {
+            if (fixture.getBody().getType() != BodyDef.BodyType.StaticBody) {
+                return -1;
+            }
+            mFraction = Math.min(mFraction, fraction);
+            return fraction;
+        }
+    }
+}
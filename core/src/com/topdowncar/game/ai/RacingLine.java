@@ -0,0 +1,434 @@
+package com.topdowncar.game.ai;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.topdowncar.game.tools.MapData;
+
+import static com.topdowncar.game.Constants.PPM;
+
+/**
+ * Closed line around the track that AI drivers follow, built once per map from its walls. Free
+ * space reachable from the first spawn is rasterised, and distance to the nearest wall is found
+ * for every cell. Starting from the spawn, facing the way cars spawn, the line follows the middle
+ * of the road until it comes back to the start. The middle line is then pulled tight like a
+ * rubber band, while keeping {@link #MIN_CLEARANCE} from the walls, so it cuts corners the way a
+ * driver would. Lines are cached by {@link MapData}, so all worlds of the same map share one line
+ */
+public class RacingLine {
+
+    private static final float CELL_SIZE = 0.5f;
+    private static final float POINT_SPACING = 2f;
+    private static final float SEARCH_ANGLE = 75 * MathUtils.degreesToRadians;
+    private static final int SEARCH_STEPS = 15;
+    private static final float STRAIGHT_BIAS = 0.5f;
+    private static final int MIN_LOOP_POINTS = 20;
+    private static final int MAX_POINTS = 20000;
+    private static final float MIN_CLEARANCE = 3f;
+    private static final int SMOOTHING_PASSES = 300;
+    private static final float SMOOTHING = 0.5f;
+    private static final int CURVATURE_WINDOW = 8;
+    private static final int[] NEIGHBOURS_X = {1, -1, 0, 0};
+    private static final int[] NEIGHBOURS_Y = {0, 0, 1, -1};
+
+    private static final ObjectMap<MapData, RacingLine> sLines = new ObjectMap<MapData, RacingLine>();
+
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mTurn;
+    private final int mCount;
+    private final float mSpacing;
+
+    /**
+     * Main RacingLine constructor
+     * @param points line points in world units, x and y after each other
+     */
+    private RacingLine(final FloatArray points) {
+        mCount = points.size / 2;
+        mX = new float[mCount];
+        mY = new float[mCount];
+        for (int i = 0; i < mCount; i++) {
+            mX[i] = points.get(i * 2);
+            mY[i] = points.get(i * 2 + 1);
+        }
+        float length = 0;
+        for (int i = 0; i < mCount; i++) {
+            length += (float) Math.hypot(mX[(i + 1) % mCount] - mX[i], mY[(i + 1) % mCount] - mY[i]);
+        }
+        mSpacing = length / mCount;
+        mTurn = new float[mCount];
+        for (int i = 0; i < mCount; i++) {
+            mTurn[i] = Math.abs(wrapAngle(getDirection(i + CURVATURE_WINDOW) - getDirection(i)));
+        }
+    }
+
+    /**
+     * Getting racing line of the map, building it the first time it is requested
+     * @param data map data
+     * @return racing line of the map
+     */
+    public static synchronized RacingLine get(final MapData data) {
+        RacingLine line = sLines.get(data);
+        if (line == null) {
+            line = build(data);
+            sLines.put(data, line);
+        }
+        return line;
+    }
+
+    /**
+     * Removing all cached lines
+     */
+    public static synchronized void clear() {
+        sLines.clear();
+    }
+
+    /**
+     * Building racing line of the map
+     * @param data map data
+     * @return new racing line
+     */
+    public static RacingLine build(final MapData data) {
+        final Rectangle bounds = data.getBounds(new Rectangle());
+        final float originX = bounds.x / PPM;
+        final float originY = bounds.y / PPM;
+        final int width = MathUtils.ceil(bounds.width / PPM / CELL_SIZE) + 1;
+        final int height = MathUtils.ceil(bounds.height / PPM / CELL_SIZE) + 1;
+        final float[] clearance = buildClearance(data, originX, originY, width, height);
+        final FloatArray points = traceMiddle(data, clearance, originX, originY, width, height);
+        tighten(points, clearance, originX, originY, width, height);
+        return new RacingLine(points);
+    }
+
+    /**
+     * Finding distance to the nearest wall for every cell reachable from the first spawn.
+     * Unreachable cells and walls get zero clearance
+     * @param data map data
+     * @param originX world x of the first cell
+     * @param originY world y of the first cell
+     * @param width grid width in cells
+     * @param height grid height in cells
+     * @return clearance of every cell in world units, row after row
+     */
+    private static float[] buildClearance(final MapData data, final float originX, final float originY,
+                                          final int width, final int height) {
+        final boolean[] blocked = new boolean[width * height];
+        final Rectangle wall = new Rectangle();
+        for (int i = 0; i < data.getWallCount(false); i++) {
+            data.getWall(i, false, wall);
+            final int minX = Math.max(0, (int) ((wall.x / PPM - originX) / CELL_SIZE));
+            final int minY = Math.max(0, (int) ((wall.y / PPM - originY) / CELL_SIZE));
+            final int maxX = Math.min(width - 1, (int) (((wall.x + wall.width) / PPM - originX) / CELL_SIZE));
+            final int maxY = Math.min(height - 1, (int) (((wall.y + wall.height) / PPM - originY) / CELL_SIZE));
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    blocked[y * width + x] = true;
+                }
+            }
+        }
+
+        // flood fill from the spawn, so areas behind walls don't count as road
+        final Rectangle spawn = data.getSpawn(0, new Rectangle());
+        final int start = cellIndex((spawn.x + spawn.width / 2) / PPM, (spawn.y + spawn.height / 2) / PPM, originX, originY, width, height);
+        if (start < 0 || blocked[start]) {
+            throw new GdxRuntimeException("Spawn is not on the road, can't build racing line");
+        }
+        final boolean[] reachable = new boolean[width * height];
+        final IntArray queue = new IntArray();
+        queue.add(start);
+        reachable[start] = true;
+        for (int head = 0; head < queue.size; head++) {
+            final int cell = queue.get(head);
+            for (int n = 0; n < NEIGHBOURS_X.length; n++) {
+                final int x = cell % width + NEIGHBOURS_X[n];
+                final int y = cell / width + NEIGHBOURS_Y[n];
+                if (x < 0 || y < 0 || x >= width || y >= height) {
+                    continue;
+                }
+                final int next = y * width + x;
+                if (!reachable[next] && !blocked[next]) {
+                    reachable[next] = true;
+                    queue.add(next);
+                }
+            }
+        }
+
+        // two pass chamfer distance transform, 1 for straight and sqrt(2) for diagonal neighbours
+        final float[] clearance = new float[width * height];
+        final float big = (width + height) * CELL_SIZE;
+        for (int i = 0; i < clearance.length; i++) {
+            clearance[i] = reachable[i] ? big : 0;
+        }
+        final float straight = CELL_SIZE;
+        final float diagonal = CELL_SIZE * (float) Math.sqrt(2);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int i = y * width + x;
+                if (clearance[i] == 0) {
+                    continue;
+                }
+                float best = clearance[i];
+                if (x > 0) {
+                    best = Math.min(best, clearance[i - 1] + straight);
+                }
+                if (y > 0) {
+                    best = Math.min(best, clearance[i - width] + straight);
+                }
+                if (x > 0 && y > 0) {
+                    best = Math.min(best, clearance[i - width - 1] + diagonal);
+                }
+                if (x < width - 1 && y > 0) {
+                    best = Math.min(best, clearance[i - width + 1] + diagonal);
+                }
+                clearance[i] = best;
+            }
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--) {
+                final int i = y * width + x;
+                if (clearance[i] == 0) {
+                    continue;
+                }
+                float best = clearance[i];
+                if (x < width - 1) {
+                    best = Math.min(best, clearance[i + 1] + straight);
+                }
+                if (y < height - 1) {
+                    best = Math.min(best, clearance[i + width] + straight);
+                }
+                if (x < width - 1 && y < height - 1) {
+                    best = Math.min(best, clearance[i + width + 1] + diagonal);
+                }
+                if (x > 0 && y < height - 1) {
+                    best = Math.min(best, clearance[i + width - 1] + diagonal);
+                }
+                clearance[i] = best;
+            }
+        }
+        return clearance;
+    }
+
+    /**
+     * Following the middle of the road from the first spawn until the line comes back to it. Every
+     * next point is picked among points ahead at {@link #POINT_SPACING} as the one farthest from
+     * walls, with a small preference for going straight
+     * @param data map data
+     * @param clearance clearance of every cell
+     * @param originX world x of the first cell
+     * @param originY world y of the first cell
+     * @param width grid width in cells
+     * @param height grid height in cells
+     * @return middle line points, x and y after each other
+     */
+    private static FloatArray traceMiddle(final MapData data, final float[] clearance, final float originX, final float originY,
+                                          final int width, final int height) {
+        final Rectangle spawn = data.getSpawn(0, new Rectangle());
+        final float startX = (spawn.x + spawn.width / 2) / PPM;
+        final float startY = (spawn.y + spawn.height / 2) / PPM;
+        final FloatArray points = new FloatArray();
+        float x = startX;
+        float y = startY;
+        // cars spawn facing up
+        float heading = MathUtils.PI / 2;
+        while (points.size / 2 < MAX_POINTS) {
+            points.add(x, y);
+            float bestScore = -Float.MAX_VALUE;
+            float bestHeading = heading;
+            for (int i = -SEARCH_STEPS; i <= SEARCH_STEPS; i++) {
+                final float offset = SEARCH_ANGLE * i / SEARCH_STEPS;
+                final float candidate = heading + offset;
+                final float score = getClearance(clearance, x + MathUtils.cos(candidate) * POINT_SPACING,
+                        y + MathUtils.sin(candidate) * POINT_SPACING, originX, originY, width, height)
+                        - Math.abs(offset) * STRAIGHT_BIAS;
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestHeading = candidate;
+                }
+            }
+            heading = bestHeading;
+            x += MathUtils.cos(heading) * POINT_SPACING;
+            y += MathUtils.sin(heading) * POINT_SPACING;
+            if (getClearance(clearance, x, y, originX, originY, width, height) <= 0) {
+                throw new GdxRuntimeException("Racing line ran in to a wall at " + x + ", " + y);
+            }
+            if (points.size / 2 >= MIN_LOOP_POINTS && Math.abs(x - startX) < POINT_SPACING && Math.abs(y - startY) < POINT_SPACING) {
+                return points;
+            }
+        }
+        throw new GdxRuntimeException("Racing line didn't come back to the start, track must be a closed loop");
+    }
+
+    /**
+     * Pulling every point towards the middle of its neighbours, as long as it stays far enough
+     * from the walls. Repeated many times, this makes the shortest line that keeps the clearance
+     * @param points line points, changed in place
+     * @param clearance clearance of every cell
+     * @param originX world x of the first cell
+     * @param originY world y of the first cell
+     * @param width grid width in cells
+     * @param height grid height in cells
+     */
+    private static void tighten(final FloatArray points, final float[] clearance, final float originX, final float originY,
+                                final int width, final int height) {
+        final int count = points.size / 2;
+        final float[] items = points.items;
+        for (int pass = 0; pass < SMOOTHING_PASSES; pass++) {
+            for (int i = 0; i < count; i++) {
+                final int previous = (i - 1 + count) % count;
+                final int next = (i + 1) % count;
+                final float x = items[i * 2];
+                final float y = items[i * 2 + 1];
+                final float targetX = x + ((items[previous * 2] + items[next * 2]) / 2 - x) * SMOOTHING;
+                final float targetY = y + ((items[previous * 2 + 1] + items[next * 2 + 1]) / 2 - y) * SMOOTHING;
+                if (getClearance(clearance, targetX, targetY, originX, originY, width, height) >= MIN_CLEARANCE) {
+                    items[i * 2] = targetX;
+                    items[i * 2 + 1] = targetY;
+                }
+            }
+        }
+    }
+
+    /**
+     * Getting clearance at a world position
+     * @param clearance clearance of every cell
+     * @param x world x
+     * @param y world y
+     * @param originX world x of the first cell
+     * @param originY world y of the first cell
+     * @param width grid width in cells
+     * @param height grid height in cells
+     * @return distance to the nearest wall, or zero outside the road
+     */
+    private static float getClearance(final float[] clearance, final float x, final float y, final float originX, final float originY,
+                                      final int width, final int height) {
+        final int cell = cellIndex(x, y, originX, originY, width, height);
+        return cell < 0 ? 0 : clearance[cell];
+    }
+
+    /**
+     * Finding grid cell of a world position
+     * @param x world x
+     * @param y world y
+     * @param originX world x of the first cell
+     * @param originY world y of the first cell
+     * @param width grid width in cells
+     * @param height grid height in cells
+     * @return cell index, or -1 outside the grid
+     */
+    private static int cellIndex(final float x, final float y, final float originX, final float originY, final int width, final int height) {
+        final int cellX = (int) Math.floor((x - originX) / CELL_SIZE);
+        final int cellY = (int) Math.floor((y - originY) / CELL_SIZE);
+        if (cellX < 0 || cellY < 0 || cellX >= width || cellY >= height) {
+            return -1;
+        }
+        return cellY * width + cellX;
+    }
+
+    /**
+     * Wrapping angle to the range from -PI to PI
+     * @param angle angle in radians
+     * @return wrapped angle
+     */
+    static float wrapAngle(final float angle) {
+        float wrapped = angle % MathUtils.PI2;
+        if (wrapped > MathUtils.PI) {
+            wrapped -= MathUtils.PI2;
+        } else if (wrapped < -MathUtils.PI) {
+            wrapped += MathUtils.PI2;
+        }
+        return wrapped;
+    }
+
+    /**
+     * Finding point nearest to the position, looking only around the given point. Used to follow
+     * progress of a car cheaply, since a car can't get far between two updates
+     * @param x world x
+     * @param y world y
+     * @param hint index of the point near which to look, or -1 to look at all points
+     * @param window how many points to look at before and after the hint
+     * @return index of the nearest point
+     */
+    public int findNearest(final float x, final float y, final int hint, final int window) {
+        final int from = hint < 0 ? 0 : hint - window;
+        final int to = hint < 0 ? mCount - 1 : hint + window;
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            final int index = wrap(i);
+            final float dx = mX[index] - x;
+            final float dy = mY[index] - y;
+            final float distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Wrapping point index around the loop
+     * @param index any point index, can be negative or past the end
+     * @return index from 0 to point count - 1
+     */
+    public int wrap(final int index) {
+        return ((index % mCount) + mCount) % mCount;
+    }
+
+    /**
+     * Returning direction of the line at the point, towards the next point
+     * @param index point index, wrapped around the loop
+     * @return direction in radians
+     */
+    public float getDirection(final int index) {
+        final int from = wrap(index);
+        final int to = wrap(index + 1);
+        return MathUtils.atan2(mY[to] - mY[from], mX[to] - mX[from]);
+    }
+
+    /**
+     * Returning how much the line turns over the next few points, used to slow down before corners
+     * @param index point index, wrapped around the loop
+     * @return turn angle in radians, not signed
+     */
+    public float getTurn(final int index) {
+        return mTurn[wrap(index)];
+    }
+
+    /**
+     * Returning x of the point
+     * @param index point index, wrapped around the loop
+     * @return x in world units
+     */
+    public float getX(final int index) {
+        return mX[wrap(index)];
+    }
+
+    /**
+     * Returning y of the point
+     * @param index point index, wrapped around the loop
+     * @return y in world units
+     */
+    public float getY(final int index) {
+        return mY[wrap(index)];
+    }
+
+    /**
+     * Returning average distance between two neighbouring points
+     * @return point spacing in world units
+     */
+    public float getSpacing() {
+        return mSpacing;
+    }
+
+    /**
+     * Returning number of points in the loop
+     * @return point count
+     */
+    public int getPointCount() {
+        return mCount;
+    }
+}
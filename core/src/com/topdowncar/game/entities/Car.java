@@ -1,19 +1,25 @@
 package com.topdowncar.game.entities;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Joint;
 import com.badlogic.gdx.physics.box2d.World;
-import com.badlogic.gdx.physics.box2d.joints.PrismaticJointDef;
-import com.badlogic.gdx.physics.box2d.joints.RevoluteJointDef;
+import com.badlogic.gdx.physics.box2d.joints.RevoluteJoint;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
 import com.topdowncar.game.BodyHolder;
 import com.topdowncar.game.screens.PlayScreen;
 import com.topdowncar.game.tools.MapLoader;
+import com.topdowncar.game.tools.ShapeFactory;
+
+import java.nio.ByteBuffer;
 
 import static com.topdowncar.game.Constants.PPM;
 
 
-public class Car extends BodyHolder {
+public class Car extends BodyHolder implements Disposable {
     public static final int DRIVE_2WD = 0;
     public static final int DRIVE_4WD = 1;
 
@@ -25,30 +31,28 @@ public class Car extends BodyHolder {
     public static final int TURN_DIRECTION_LEFT = 1;
     public static final int TURN_DIRECTION_RIGHT = 2;
 
-    private static final Vector2 WHEEL_SIZE = new Vector2(16, 32);
-    private static final float LINEAR_DAMPING = 0.5f;
-    private static final float RESTITUTION = 0.2f;
-
-    private static final float MAX_WHEEL_ANGLE = 20.0f;
-    private static final float WHEEL_TURN_INCREMENT = 1.0f;
+    private static final float STEERING_MOTOR_TORQUE = 500.0f;
+    private static final float STEERING_EPSILON = 0.5f * MathUtils.degreesToRadians;
 
-    private static final float WHEEL_OFFSET_X = 64;
-    private static final float WHEEL_OFFSET_Y = 80;
-    private static final int WHEEL_NUMBER = 4;
-
-    private static final float BREAK_POWER = 1.3f;
-    private static final float REVERSE_POWER = 0.5f;
+    private static final float IDLE_SPEED = 0.1f;
 
     private int mDriveDirection = DRIVE_DIRECTION_NONE;
     private int mTurnDirection = TURN_DIRECTION_NONE;
 
-    private float mCurrentWheelAngle = 0;
+    private final CarSpec mSpec;
+    private float mSteeringRate;
+    private final float mMaxWheelAngle;
+    private boolean mSleepingAllowed = true;
+    private boolean mResting;
     private final Array<Wheel> mAllWheels = new Array<Wheel>();
-    private final Array<Wheel> mRevolvingWheels = new Array<Wheel>();
+    private final Array<RevoluteJoint> mSteeringJoints = new Array<RevoluteJoint>();
+    private final Array<Joint> mJoints = new Array<Joint>();
     private float mDrift;
     private float mCurrentMaxSpeed;
     private final float mRegularMaxSpeed;
     private float mAcceleration;
+    private final Vector2 mBaseVector = new Vector2();
+    private final Vector2 mWheelLocalPosition = new Vector2();
 
     /**
      * Base constructor for Car object
@@ -60,72 +64,75 @@ public class Car extends BodyHolder {
      * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      */
     public Car(final float maxSpeed, final float drift, final float acceleration, final MapLoader mapLoader, final int wheelDrive, final World world) {
-        super(mapLoader.getPlayer());
-        this.mRegularMaxSpeed = maxSpeed;
-        this.mDrift = drift;
-        this.mAcceleration = acceleration;
-        getBody().setLinearDamping(LINEAR_DAMPING);
-        getBody().getFixtureList().get(0).setRestitution(RESTITUTION);
-        createWheels(world, wheelDrive);
+        this(maxSpeed, drift, acceleration, mapLoader.getPlayer(), wheelDrive, world);
     }
 
     /**
-     * Method used to create wheel
-     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * Constructor for Car object that uses already created body as a car chassis
+     * @param maxSpeed Maximum car speed
+     * @param drift car drift value (0 - no drift, 1 absolute drift)
+     * @param acceleration car acceleration amount
+     * @param body chassis body, for example one received from {@link MapLoader#getPlayer(float, float)}
      * @param wheelDrive does this car have 4 wheel drive or 2 wheel drive
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      */
-    private void createWheels(final World world, final int wheelDrive) {
-        for (int i = 0; i < WHEEL_NUMBER; i++) {
-            float xOffset = 0;
-            float yOffset = 0;
-
-            switch (i) {
-                case Wheel.UPPER_LEFT:
-                    xOffset = -WHEEL_OFFSET_X;
-                    yOffset = WHEEL_OFFSET_Y;
-                    break;
-                case Wheel.UPPER_RIGHT:
-                    xOffset = WHEEL_OFFSET_X;
-                    yOffset = WHEEL_OFFSET_Y;
-                    break;
-                case Wheel.DOWN_LEFT:
-                    xOffset = -WHEEL_OFFSET_X;
-                    yOffset = -WHEEL_OFFSET_Y;
-                    break;
-                case Wheel.DOWN_RIGHT:
-                    xOffset = WHEEL_OFFSET_X;
-                    yOffset = -WHEEL_OFFSET_Y;
-                    break;
-                default:
-                    throw new IllegalArgumentException("Wheel number not supported. Create logic for positioning wheel with number " + i);
-            }
-            final boolean powered = wheelDrive == DRIVE_4WD || (wheelDrive == DRIVE_2WD && i < 2);
+    public Car(final float maxSpeed, final float drift, final float acceleration, final Body body, final int wheelDrive, final World world) {
+        this(CarSpec.createDefault(maxSpeed, drift, acceleration, wheelDrive), body, world);
+    }
+
+    /**
+     * Constructor for Car object built from the archetype definition
+     * @param spec {@link CarSpec} defining driving parameters and wheels
+     * @param body chassis body, for example one received from {@link MapLoader#getPlayer(float, float)}
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     */
+    public Car(final CarSpec spec, final Body body, final World world) {
+        super(body);
+        this.mSpec = spec;
+        this.mRegularMaxSpeed = spec.getMaxSpeed();
+        this.mDrift = spec.getDrift();
+        this.mAcceleration = spec.getAcceleration();
+        this.mMaxWheelAngle = spec.getMaxWheelAngle() * MathUtils.degreesToRadians;
+        this.mSteeringRate = spec.getSteeringRate() * MathUtils.degreesToRadians;
+        getBody().setLinearDamping(spec.getLinearDamping());
+        getBody().getFixtureList().get(0).setRestitution(spec.getRestitution());
+        // chassis from the map is created with the map density, so density of the spec is set here
+        getBody().getFixtureList().get(0).setDensity(spec.getDensity());
+        getBody().resetMassData();
+        createWheels(world);
+    }
+
+    /**
+     * Method used to create wheels defined in the spec. Steered wheels are attached with revolute
+     * joints and all other wheels with locked prismatic joints
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     */
+    private void createWheels(final World world) {
+        for (int i = 0; i < mSpec.getWheelCount(); i++) {
+            final CarSpec.WheelSpec wheelSpec = mSpec.getWheel(i);
+            final Vector2 position = new Vector2(getBody().getWorldPoint(
+                    mWheelLocalPosition.set(wheelSpec.getOffsetX() / PPM, wheelSpec.getOffsetY() / PPM))).scl(PPM);
 
             final Wheel wheel = new Wheel(
-                    new Vector2(getBody().getPosition().x * PPM + xOffset, getBody().getPosition().y * PPM + yOffset),
-                    WHEEL_SIZE,
+                    position,
+                    new Vector2(wheelSpec.getHalfWidth(), wheelSpec.getHalfHeight()),
                     world,
                     i,
                     this,
-                    powered);
+                    wheelSpec.isPowered(),
+                    wheelSpec.isKillDrift());
 
-            if (i < 2) {
-                final RevoluteJointDef jointDef = new RevoluteJointDef();
-                jointDef.initialize(getBody(), wheel.getBody(), wheel.getBody().getWorldCenter());
-                jointDef.enableMotor = false;
-                world.createJoint(jointDef);
+            if (wheelSpec.isSteerable()) {
+                // wheel is turned by the motor, and limits keep it from turning past max angle
+                final RevoluteJoint joint = ShapeFactory.createRevoluteJoint(world, getBody(), wheel.getBody(),
+                        wheel.getBody().getWorldCenter(), -mMaxWheelAngle, mMaxWheelAngle, STEERING_MOTOR_TORQUE);
+                mSteeringJoints.add(joint);
+                mJoints.add(joint);
             } else {
-                final PrismaticJointDef jointDef = new PrismaticJointDef();
-                jointDef.initialize(getBody(), wheel.getBody(), wheel.getBody().getWorldCenter(), new Vector2(1, 0));
-                jointDef.enableLimit = true;
-                jointDef.lowerTranslation = jointDef.upperTranslation = 0;
-                world.createJoint(jointDef);
+                mJoints.add(ShapeFactory.createLockedJoint(world, getBody(), wheel.getBody(), wheel.getBody().getWorldCenter()));
             }
 
             mAllWheels.add(wheel);
-            if (i < 2) {
-                mRevolvingWheels.add(wheel);
-            }
             wheel.setDrift(mDrift);
         }
 
@@ -133,35 +140,32 @@ public class Car extends BodyHolder {
 
     /**
      * Used to process input received from GDX handled in {@link PlayScreen#handleInput()}
+     * @param delta time that is about to be simulated
      */
-    private void processInput() {
-        final Vector2 baseVector = new Vector2(0, 0);
+    private void processInput(final float delta) {
+        final Vector2 baseVector = mBaseVector.set(0, 0);
+        final boolean noInput = mDriveDirection == DRIVE_DIRECTION_NONE && mTurnDirection == TURN_DIRECTION_NONE;
+        if (!noInput && !getBody().isAwake()) {
+            getBody().setAwake(true);
+        }
+        // slow car without input is idle, so nothing is done that would keep its bodies awake
+        final boolean idle = mSleepingAllowed && noInput && getBody().getLinearVelocity().len2() < IDLE_SPEED * IDLE_SPEED;
 
+        float targetAngle = 0;
         if (mTurnDirection == TURN_DIRECTION_LEFT) {
-            if (mCurrentWheelAngle < 0) {
-                mCurrentWheelAngle = 0;
-            }
-            mCurrentWheelAngle = Math.min(mCurrentWheelAngle += WHEEL_TURN_INCREMENT, MAX_WHEEL_ANGLE);
+            targetAngle = mMaxWheelAngle;
         } else if (mTurnDirection == TURN_DIRECTION_RIGHT) {
-            if (mCurrentWheelAngle > 0) {
-                mCurrentWheelAngle = 0;
-            }
-            mCurrentWheelAngle = Math.max(mCurrentWheelAngle -= WHEEL_TURN_INCREMENT, -MAX_WHEEL_ANGLE);
-        } else {
-            mCurrentWheelAngle = 0;
-        }
-
-        for (final Wheel wheel : new Array.ArrayIterator<Wheel>(mRevolvingWheels)) {
-            wheel.setAngle(mCurrentWheelAngle);
+            targetAngle = -mMaxWheelAngle;
         }
+        steer(targetAngle, idle, delta);
 
         if (mDriveDirection == DRIVE_DIRECTION_FORWARD) {
             baseVector.set(0, mAcceleration);
         } else if (mDriveDirection == DRIVE_DIRECTION_BACKWARD) {
             if (direction() == DIRECTION_BACKWARD) {
-                baseVector.set(0, -mAcceleration * REVERSE_POWER);
+                baseVector.set(0, -mAcceleration * mSpec.getReversePower());
             } else if (direction() == DIRECTION_FORWARD) {
-                baseVector.set(0, -mAcceleration * BREAK_POWER);
+                baseVector.set(0, -mAcceleration * mSpec.getBreakPower());
             } else {
                 baseVector.set(0, -mAcceleration);
             }
@@ -173,8 +177,10 @@ public class Car extends BodyHolder {
         //}
         mCurrentMaxSpeed = mRegularMaxSpeed;
 
-        if (getBody().getLinearVelocity().len() < mCurrentMaxSpeed) {
-            for (final Wheel wheel : new Array.ArrayIterator<Wheel>(mAllWheels)) {
+        // zero force does nothing except waking the body, so it is not applied
+        if (!baseVector.isZero() && getBody().getLinearVelocity().len() < mCurrentMaxSpeed) {
+            for (int i = 0; i < mAllWheels.size; i++) {
+                final Wheel wheel = mAllWheels.get(i);
                 if (wheel.isPowered()) {
                     wheel.getBody().applyForceToCenter(wheel.getBody().getWorldVector(baseVector), true);
                 }
@@ -182,6 +188,38 @@ public class Car extends BodyHolder {
         }
     }
 
+    /**
+     * Turning steered wheels toward the target angle with the joint motors. Motor speed is set so
+     * the wheel reaches the target in one step, but not faster than the steering rate. Setting
+     * motor speed wakes the bodies, so speed of an idle car is only set when it changes, and its
+     * motor is stopped once the wheel is within {@link #STEERING_EPSILON} of the target
+     * @param targetAngle wheel angle relative to the car, in radians
+     * @param idle is car idle
+     * @param delta time that is about to be simulated
+     */
+    private void steer(final float targetAngle, final boolean idle, final float delta) {
+        for (int i = 0; i < mSteeringJoints.size; i++) {
+            final RevoluteJoint joint = mSteeringJoints.get(i);
+            final float error = targetAngle - joint.getJointAngle();
+            final float speed = delta <= 0 || idle && Math.abs(error) < STEERING_EPSILON ? 0
+                    : MathUtils.clamp(error / delta, -mSteeringRate, mSteeringRate);
+            if (!idle || joint.getMotorSpeed() != speed) {
+                joint.setMotorSpeed(speed);
+            }
+        }
+    }
+
+    /**
+     * Setting how fast the wheels turn
+     * @param degreesPerSecond steering rate in degrees per second
+     */
+    public void setSteeringRate(final float degreesPerSecond) {
+        if (degreesPerSecond <= 0) {
+            throw new IllegalArgumentException("Steering rate must be positive, got " + degreesPerSecond);
+        }
+        this.mSteeringRate = degreesPerSecond * MathUtils.degreesToRadians;
+    }
+
     /**
      * Setting drive direction either to forward or backward
      * @param driveDirection drive direction to set
@@ -198,13 +236,255 @@ public class Car extends BodyHolder {
         this.mTurnDirection = turnDirection;
     }
 
+    /**
+     * Moving car with all its wheels to the given position, straightening the wheels and stopping
+     * all movement. Used to reuse car instead of creating a new one
+     * @param x new car position x in world units
+     * @param y new car position y in world units
+     * @param angle new car angle in radians
+     */
+    public void reset(final float x, final float y, final float angle) {
+        final float cos = (float) Math.cos(angle);
+        final float sin = (float) Math.sin(angle);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            final Body wheelBody = mAllWheels.get(i).getBody();
+            mWheelLocalPosition.set(getBody().getLocalPoint(wheelBody.getPosition()));
+            wheelBody.setTransform(
+                    x + mWheelLocalPosition.x * cos - mWheelLocalPosition.y * sin,
+                    y + mWheelLocalPosition.x * sin + mWheelLocalPosition.y * cos,
+                    angle);
+            wheelBody.setLinearVelocity(0, 0);
+            wheelBody.setAngularVelocity(0);
+        }
+        getBody().setTransform(x, y, angle);
+        getBody().setLinearVelocity(0, 0);
+        getBody().setAngularVelocity(0);
+        for (int i = 0; i < mSteeringJoints.size; i++) {
+            mSteeringJoints.get(i).setMotorSpeed(0);
+        }
+        mResting = false;
+        mDriveDirection = DRIVE_DIRECTION_NONE;
+        mTurnDirection = TURN_DIRECTION_NONE;
+        saveTransform();
+    }
+
+    /**
+     * Moving and turning car with all its wheels around the car center, keeping its movement.
+     * Velocities are turned together with the car, so it keeps going the same way relative to
+     * itself. Used to correct predicted car towards the state received from the server
+     * @param dx position change x in world units
+     * @param dy position change y in world units
+     * @param dAngle angle change in radians
+     */
+    public void moveBy(final float dx, final float dy, final float dAngle) {
+        final float cos = (float) Math.cos(dAngle);
+        final float sin = (float) Math.sin(dAngle);
+        final float centerX = getBody().getPosition().x;
+        final float centerY = getBody().getPosition().y;
+        for (int i = 0; i < mAllWheels.size; i++) {
+            final Body wheelBody = mAllWheels.get(i).getBody();
+            final float localX = wheelBody.getPosition().x - centerX;
+            final float localY = wheelBody.getPosition().y - centerY;
+            wheelBody.setTransform(
+                    centerX + dx + localX * cos - localY * sin,
+                    centerY + dy + localX * sin + localY * cos,
+                    wheelBody.getAngle() + dAngle);
+            rotateVelocity(wheelBody, cos, sin);
+        }
+        getBody().setTransform(centerX + dx, centerY + dy, getBody().getAngle() + dAngle);
+        rotateVelocity(getBody(), cos, sin);
+    }
+
+    /**
+     * Turning linear velocity of the body
+     * @param body body to change
+     * @param cos cosine of the angle change
+     * @param sin sine of the angle change
+     */
+    private static void rotateVelocity(final Body body, final float cos, final float sin) {
+        final float vx = body.getLinearVelocity().x;
+        final float vy = body.getLinearVelocity().y;
+        body.setLinearVelocity(vx * cos - vy * sin, vx * sin + vy * cos);
+    }
+
+    /**
+     * Activating or deactivating car and all its wheels. Inactive bodies are removed from the
+     * simulation but kept in the world, so they can be reused cheaply
+     * @param active true to activate the car
+     */
+    public void setActive(final boolean active) {
+        getBody().setActive(active);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).getBody().setActive(active);
+        }
+    }
+
+    /**
+     * Setting collision group of the chassis and all wheels, see {@link ShapeFactory#setGroup(Body, short)}
+     * @param group negative group index to keep parts of this car from touching each other, or
+     *              {@link ShapeFactory#NO_GROUP}
+     */
+    public void setCollisionGroup(final short group) {
+        ShapeFactory.setGroup(getBody(), group);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            ShapeFactory.setGroup(mAllWheels.get(i).getBody(), group);
+        }
+    }
+
+    /**
+     * Allowing or disallowing Box2D to put the car to sleep. When allowed, forces and wheel
+     * transforms are skipped for a slow car without input, so Box2D can put it to sleep; car wakes
+     * up on input or when something hits it
+     * @param allowed true to allow sleeping
+     */
+    public void setSleepingAllowed(final boolean allowed) {
+        this.mSleepingAllowed = allowed;
+        getBody().setSleepingAllowed(allowed);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).getBody().setSleepingAllowed(allowed);
+        }
+        if (!allowed) {
+            mResting = false;
+        }
+    }
+
+    /**
+     * Checking if car was skipped in the last {@link #prepareStep(float)} because it is asleep
+     * @return true if car is resting
+     */
+    public boolean isResting() {
+        return mResting;
+    }
+
+    /**
+     * Returning archetype this car was built from
+     * @return car spec
+     */
+    public CarSpec getSpec() {
+        return mSpec;
+    }
+
+    /**
+     * Returning all wheels of this car
+     * @return array of wheels
+     */
+    public Array<Wheel> getWheels() {
+        return mAllWheels;
+    }
+
+    /**
+     * Destroying all joints, wheel bodies and the chassis body of this car. Car must not be used
+     * afterwards. Cars that may be needed again should be deactivated with
+     * {@link #setActive(boolean)} instead
+     */
+    @Override
+    public void dispose() {
+        final World world = getBody().getWorld();
+        for (int i = 0; i < mJoints.size; i++) {
+            world.destroyJoint(mJoints.get(i));
+        }
+        mJoints.clear();
+        mSteeringJoints.clear();
+        for (int i = 0; i < mAllWheels.size; i++) {
+            world.destroyBody(mAllWheels.get(i).getBody());
+        }
+        mAllWheels.clear();
+        world.destroyBody(getBody());
+    }
+
+    /**
+     * Returning number of bytes written by {@link #saveState(ByteBuffer)}
+     * @return state size in bytes
+     */
+    public int getStateSize() {
+        return STATE_SIZE * (1 + mAllWheels.size) + 3 + 4 * mSteeringJoints.size;
+    }
+
+    /**
+     * Writing state of the chassis, all wheels, steering motors and input to the buffer
+     * @param out buffer to write to, with at least {@link #getStateSize()} bytes remaining
+     */
+    @Override
+    public void saveState(final ByteBuffer out) {
+        out.put((byte) mDriveDirection).put((byte) mTurnDirection).put(mResting ? (byte) 1 : (byte) 0);
+        for (int i = 0; i < mSteeringJoints.size; i++) {
+            out.putFloat(mSteeringJoints.get(i).getMotorSpeed());
+        }
+        super.saveState(out);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).saveState(out);
+        }
+    }
+
+    /**
+     * Reading state written by {@link #saveState(ByteBuffer)} and applying it in place. Buffer
+     * must come from a car with the same spec
+     * @param in buffer to read from
+     */
+    @Override
+    public void restoreState(final ByteBuffer in) {
+        mDriveDirection = in.get();
+        mTurnDirection = in.get();
+        mResting = in.get() != 0;
+        for (int i = 0; i < mSteeringJoints.size; i++) {
+            final float speed = in.getFloat();
+            final RevoluteJoint joint = mSteeringJoints.get(i);
+            // setting motor speed wakes the bodies, so it is done before awake flags are restored
+            if (joint.getMotorSpeed() != speed) {
+                joint.setMotorSpeed(speed);
+            }
+        }
+        super.restoreState(in);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).restoreState(in);
+        }
+    }
+
+    @Override
+    public void saveTransform() {
+        super.saveTransform();
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).saveTransform();
+        }
+    }
+
     @Override
     public void update(float delta) {
-        super.update(delta);
-        processInput();
-        for (final Wheel wheel : new Array.ArrayIterator<Wheel>(mAllWheels)) {
-            wheel.update(delta);
+        updateInput(delta);
+        for (int i = 0; i < mAllWheels.size; i++) {
+            mAllWheels.get(i).update(delta);
         }
 
     }
+
+    /**
+     * Preparing car for the next world step, by saving its transform and applying input. Car
+     * without input which bodies Box2D has put to sleep is skipped, after its transform is saved
+     * once more so interpolation ends at the resting position
+     * @param delta time that is about to be simulated
+     * @return true if car was updated, false if it is resting
+     */
+    public boolean prepareStep(final float delta) {
+        if (mDriveDirection == DRIVE_DIRECTION_NONE && mTurnDirection == TURN_DIRECTION_NONE && !getBody().isAwake()) {
+            if (!mResting) {
+                saveTransform();
+                mResting = true;
+            }
+            return false;
+        }
+        mResting = false;
+        saveTransform();
+        updateInput(delta);
+        return true;
+    }
+
+    /**
+     * Updating car body and applying input to the wheels, without updating wheel drift. Used when
+     * wheel drift is handled for many cars at once by {@link VehicleState}
+     * @param delta time that is about to be simulated
+     */
+    public void updateInput(final float delta) {
+        super.update(delta);
+        processInput(delta);
+    }
 }
@@ -0,0 +1,401 @@
+package com.topdowncar.game.entities;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * Immutable, validated definition of one car archetype: driving parameters, chassis and any number
+ * of wheels. Specs are parsed once, see {@link CarSpecCache}, and shared by every car created from
+ * them. Sizes and offsets are in pixels, like everything else read from assets, and sizes are
+ * half sizes, as used by {@link com.topdowncar.game.tools.ShapeFactory}
+ */
+public class CarSpec {
+
+    private static final float DEFAULT_BREAK_POWER = 1.3f;
+    private static final float DEFAULT_REVERSE_POWER = 0.5f;
+    private static final float DEFAULT_MAX_WHEEL_ANGLE = 20.0f;
+    private static final float DEFAULT_STEERING_RATE = 120.0f;
+    private static final float DEFAULT_LINEAR_DAMPING = 0.5f;
+    private static final float DEFAULT_RESTITUTION = 0.2f;
+    private static final float DEFAULT_DENSITY = 0.4f;
+
+    private static final float DEFAULT_WHEEL_HALF_WIDTH = 16;
+    private static final float DEFAULT_WHEEL_HALF_HEIGHT = 32;
+    private static final float DEFAULT_WHEEL_OFFSET_X = 64;
+    private static final float DEFAULT_WHEEL_OFFSET_Y = 80;
+
+    private final String mName;
+    private final float mMaxSpeed;
+    private final float mDrift;
+    private final float mAcceleration;
+    private final float mBreakPower;
+    private final float mReversePower;
+    private final float mMaxWheelAngle;
+    private final float mSteeringRate;
+    private final float mLinearDamping;
+    private final float mRestitution;
+    private final float mDensity;
+    private final float mHalfWidth;
+    private final float mHalfHeight;
+    private final WheelSpec[] mWheels;
+
+    /**
+     * Definition of one wheel of the car
+     */
+    public static class WheelSpec {
+
+        private final float mOffsetX;
+        private final float mOffsetY;
+        private final float mHalfWidth;
+        private final float mHalfHeight;
+        private final boolean mPowered;
+        private final boolean mSteerable;
+        private final boolean mKillDrift;
+
+        /**
+         * Main WheelSpec constructor
+         * @param offsetX wheel center offset from car center, in pixels
+         * @param offsetY wheel center offset from car center, in pixels
+         * @param halfWidth half of the wheel width, in pixels
+         * @param halfHeight half of the wheel length, in pixels
+         * @param powered is force applied to the wheel
+         * @param steerable is wheel turned by steering
+         * @param killDrift is small sideways velocity of the wheel killed
+         */
+        public WheelSpec(final float offsetX, final float offsetY, final float halfWidth, final float halfHeight,
+                         final boolean powered, final boolean steerable, final boolean killDrift) {
+            if (halfWidth <= 0 || halfHeight <= 0) {
+                throw new IllegalArgumentException("Wheel size must be positive, got " + halfWidth + " x " + halfHeight);
+            }
+            this.mOffsetX = offsetX;
+            this.mOffsetY = offsetY;
+            this.mHalfWidth = halfWidth;
+            this.mHalfHeight = halfHeight;
+            this.mPowered = powered;
+            this.mSteerable = steerable;
+            this.mKillDrift = killDrift;
+        }
+
+        /**
+         * Returning horizontal wheel offset from car center
+         * @return offset in pixels
+         */
+        public float getOffsetX() {
+            return mOffsetX;
+        }
+
+        /**
+         * Returning vertical wheel offset from car center
+         * @return offset in pixels
+         */
+        public float getOffsetY() {
+            return mOffsetY;
+        }
+
+        /**
+         * Returning half of the wheel width
+         * @return half size in pixels
+         */
+        public float getHalfWidth() {
+            return mHalfWidth;
+        }
+
+        /**
+         * Returning half of the wheel length
+         * @return half size in pixels
+         */
+        public float getHalfHeight() {
+            return mHalfHeight;
+        }
+
+        /**
+         * Checking if force is applied to the wheel
+         * @return true if wheel is powered
+         */
+        public boolean isPowered() {
+            return mPowered;
+        }
+
+        /**
+         * Checking if wheel is turned by steering
+         * @return true if wheel is steered
+         */
+        public boolean isSteerable() {
+            return mSteerable;
+        }
+
+        /**
+         * Checking if small sideways velocity of the wheel is killed
+         * @return true if drift is killed
+         */
+        public boolean isKillDrift() {
+            return mKillDrift;
+        }
+    }
+
+    /**
+     * Main CarSpec constructor. Wheel array is copied
+     * @param name archetype name
+     * @param maxSpeed maximum car speed
+     * @param drift car drift value (0 - no drift, 1 absolute drift)
+     * @param acceleration car acceleration amount
+     * @param breakPower acceleration multiplier used when braking
+     * @param reversePower acceleration multiplier used when driving backward
+     * @param maxWheelAngle maximum angle of steered wheels, in degrees
+     * @param steeringRate how fast steered wheels turn, in degrees per second
+     * @param linearDamping linear damping of the chassis
+     * @param restitution restitution of the chassis
+     * @param density density of the chassis
+     * @param halfWidth half of the chassis width in pixels, or 0 to use player rectangle from the map
+     * @param halfHeight half of the chassis length in pixels, or 0 to use player rectangle from the map
+     * @param wheels wheel definitions, at least one of them powered
+     */
+    public CarSpec(final String name, final float maxSpeed, final float drift, final float acceleration,
+                   final float breakPower, final float reversePower, final float maxWheelAngle, final float steeringRate,
+                   final float linearDamping, final float restitution, final float density,
+                   final float halfWidth, final float halfHeight, final WheelSpec[] wheels) {
+        if (maxSpeed <= 0 || acceleration <= 0) {
+            throw new IllegalArgumentException("Car '" + name + "' must have positive max speed and acceleration");
+        }
+        if (drift < 0 || drift > 1) {
+            throw new IllegalArgumentException("Car '" + name + "' drift must be between 0 and 1, got " + drift);
+        }
+        if (maxWheelAngle < 0 || steeringRate <= 0 || density <= 0) {
+            throw new IllegalArgumentException("Car '" + name + "' has invalid steering or density");
+        }
+        if ((halfWidth > 0) != (halfHeight > 0)) {
+            throw new IllegalArgumentException("Car '" + name + "' must set both chassis width and height, or none");
+        }
+        if (wheels.length == 0) {
+            throw new IllegalArgumentException("Car '" + name + "' has no wheels");
+        }
+        boolean powered = false;
+        for (final WheelSpec wheel : wheels) {
+            powered |= wheel.isPowered();
+        }
+        if (!powered) {
+            throw new IllegalArgumentException("Car '" + name + "' has no powered wheels");
+        }
+        this.mName = name;
+        this.mMaxSpeed = maxSpeed;
+        this.mDrift = drift;
+        this.mAcceleration = acceleration;
+        this.mBreakPower = breakPower;
+        this.mReversePower = reversePower;
+        this.mMaxWheelAngle = maxWheelAngle;
+        this.mSteeringRate = steeringRate;
+        this.mLinearDamping = linearDamping;
+        this.mRestitution = restitution;
+        this.mDensity = density;
+        this.mHalfWidth = halfWidth;
+        this.mHalfHeight = halfHeight;
+        this.mWheels = wheels.clone();
+    }
+
+    /**
+     * Creating spec with the original four wheel layout, front wheels steered and rear wheels
+     * killing drift. Used by the old {@link Car} constructors
+     * @param maxSpeed maximum car speed
+     * @param drift car drift value (0 - no drift, 1 absolute drift)
+     * @param acceleration car acceleration amount
+     * @param wheelDrive {@link Car#DRIVE_2WD} or {@link Car#DRIVE_4WD}
+     * @return created spec
+     */
+    public static CarSpec createDefault(final float maxSpeed, final float drift, final float acceleration, final int wheelDrive) {
+        final boolean rearPowered = wheelDrive == Car.DRIVE_4WD;
+        final WheelSpec[] wheels = {
+                new WheelSpec(-DEFAULT_WHEEL_OFFSET_X, DEFAULT_WHEEL_OFFSET_Y, DEFAULT_WHEEL_HALF_WIDTH, DEFAULT_WHEEL_HALF_HEIGHT, true, true, false),
+                new WheelSpec(DEFAULT_WHEEL_OFFSET_X, DEFAULT_WHEEL_OFFSET_Y, DEFAULT_WHEEL_HALF_WIDTH, DEFAULT_WHEEL_HALF_HEIGHT, true, true, false),
+                new WheelSpec(-DEFAULT_WHEEL_OFFSET_X, -DEFAULT_WHEEL_OFFSET_Y, DEFAULT_WHEEL_HALF_WIDTH, DEFAULT_WHEEL_HALF_HEIGHT, rearPowered, false, true),
+                new WheelSpec(DEFAULT_WHEEL_OFFSET_X, -DEFAULT_WHEEL_OFFSET_Y, DEFAULT_WHEEL_HALF_WIDTH, DEFAULT_WHEEL_HALF_HEIGHT, rearPowered, false, true)
+        };
+        return new CarSpec(wheelDrive == Car.DRIVE_4WD ? "default4wd" : "default", maxSpeed, drift, acceleration,
+                DEFAULT_BREAK_POWER, DEFAULT_REVERSE_POWER, DEFAULT_MAX_WHEEL_ANGLE, DEFAULT_STEERING_RATE,
+                DEFAULT_LINEAR_DAMPING, DEFAULT_RESTITUTION, DEFAULT_DENSITY, 0, 0, wheels);
+    }
+
+    /**
+     * Reading spec from JSON object. Driving values "maxSpeed", "drift", "acceleration" and array
+     * "wheels" are required, everything else has a default. Every wheel needs "x" and "y", and
+     * can set "halfWidth", "halfHeight", "powered", "steerable" and "killDrift"
+     * @param name archetype name
+     * @param json JSON object of the archetype
+     * @return parsed spec
+     */
+    public static CarSpec fromJson(final String name, final JsonValue json) {
+        final JsonValue wheelsJson = json.get("wheels");
+        if (wheelsJson == null || !wheelsJson.isArray()) {
+            throw new GdxRuntimeException("Car '" + name + "' has no wheels array");
+        }
+        final WheelSpec[] wheels = new WheelSpec[wheelsJson.size];
+        int i = 0;
+        for (JsonValue wheel = wheelsJson.child; wheel != null; wheel = wheel.next) {
+            wheels[i++] = new WheelSpec(
+                    required(name, wheel, "x"),
+                    required(name, wheel, "y"),
+                    wheel.getFloat("halfWidth", DEFAULT_WHEEL_HALF_WIDTH),
+                    wheel.getFloat("halfHeight", DEFAULT_WHEEL_HALF_HEIGHT),
+                    wheel.getBoolean("powered", false),
+                    wheel.getBoolean("steerable", false),
+                    wheel.getBoolean("killDrift", false));
+        }
+        return new CarSpec(name,
+                required(name, json, "maxSpeed"),
+                required(name, json, "drift"),
+                required(name, json, "acceleration"),
+                json.getFloat("breakPower", DEFAULT_BREAK_POWER),
+                json.getFloat("reversePower", DEFAULT_REVERSE_POWER),
+                json.getFloat("maxWheelAngle", DEFAULT_MAX_WHEEL_ANGLE),
+                json.getFloat("steeringRate", DEFAULT_STEERING_RATE),
+                json.getFloat("linearDamping", DEFAULT_LINEAR_DAMPING),
+                json.getFloat("restitution", DEFAULT_RESTITUTION),
+                json.getFloat("density", DEFAULT_DENSITY),
+                json.getFloat("halfWidth", 0),
+                json.getFloat("halfHeight", 0),
+                wheels);
+    }
+
+    /**
+     * Reading required float value
+     * @param name archetype name, used in error message
+     * @param json JSON object to read from
+     * @param key value name
+     * @return read value
+     */
+    private static float required(final String name, final JsonValue json, final String key) {
+        final JsonValue value = json.get(key);
+        if (value == null) {
+            throw new GdxRuntimeException("Car '" + name + "' is missing '" + key + "'");
+        }
+        return value.asFloat();
+    }
+
+    /**
+     * Checking if spec sets its own chassis size
+     * @return true if chassis size is set, false if player rectangle from the map is used
+     */
+    public boolean hasChassisSize() {
+        return mHalfWidth > 0;
+    }
+
+    /**
+     * Returning number of wheels
+     * @return wheel count
+     */
+    public int getWheelCount() {
+        return mWheels.length;
+    }
+
+    /**
+     * Returning wheel definition
+     * @param index wheel index
+     * @return wheel spec
+     */
+    public WheelSpec getWheel(final int index) {
+        return mWheels[index];
+    }
+
+    /**
+     * Returning archetype name
+     * @return name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returning maximum car speed
+     * @return max speed
+     */
+    public float getMaxSpeed() {
+        return mMaxSpeed;
+    }
+
+    /**
+     * Returning car drift value
+     * @return drift (0 - no drift, 1 absolute drift)
+     */
+    public float getDrift() {
+        return mDrift;
+    }
+
+    /**
+     * Returning car acceleration amount
+     * @return acceleration
+     */
+    public float getAcceleration() {
+        return mAcceleration;
+    }
+
+    /**
+     * Returning acceleration multiplier used when braking
+     * @return break power
+     */
+    public float getBreakPower() {
+        return mBreakPower;
+    }
+
+    /**
+     * Returning acceleration multiplier used when driving backward
+     * @return reverse power
+     */
+    public float getReversePower() {
+        return mReversePower;
+    }
+
+    /**
+     * Returning maximum angle of steered wheels
+     * @return angle in degrees
+     */
+    public float getMaxWheelAngle() {
+        return mMaxWheelAngle;
+    }
+
+    /**
+     * Returning how fast steered wheels turn
+     * @return rate in degrees per second
+     */
+    public float getSteeringRate() {
+        return mSteeringRate;
+    }
+
+    /**
+     * Returning linear damping of the chassis
+     * @return damping
+     */
+    public float getLinearDamping() {
+        return mLinearDamping;
+    }
+
+    /**
+     * Returning restitution of the chassis
+     * @return restitution
+     */
+    public float getRestitution() {
+        return mRestitution;
+    }
+
+    /**
+     * Returning density of the chassis
+     * @return density
+     */
+    public float getDensity() {
+        return mDensity;
+    }
+
+    /**
+     * Returning half of the chassis width, 0 if player rectangle from the map is used
+     * @return half size in pixels
+     */
+    public float getHalfWidth() {
+        return mHalfWidth;
+    }
+
+    /**
+     * Returning half of the chassis length, 0 if player rectangle from the map is used
+     * @return half size in pixels
+     */
+    public float getHalfHeight() {
+        return mHalfHeight;
+    }
+}
@@ -0,0 +1,75 @@
+package com.topdowncar.game.entities;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import static com.topdowncar.game.Constants.CAR_SPEC_FILE;
+
+/**
+ * Cache of parsed {@link CarSpec} by archetype name. Spec file is a JSON object with one member
+ * per archetype, and it is parsed only once, no matter how many cars are created from it. Safe to
+ * use from more than one thread
+ */
+public class CarSpecCache {
+
+    private static final ObjectMap<String, CarSpec> sSpecs = new ObjectMap<String, CarSpec>();
+    private static boolean sDefaultFileLoaded;
+
+    /**
+     * Main constructor set to private to disable object creation by the user
+     */
+    private CarSpecCache() {
+    }
+
+    /**
+     * Getting car spec, parsing {@link com.topdowncar.game.Constants#CAR_SPEC_FILE} the first time
+     * any spec is requested
+     * @param name archetype name
+     * @return parsed car spec
+     */
+    public static synchronized CarSpec get(final String name) {
+        if (!sDefaultFileLoaded) {
+            sDefaultFileLoaded = true;
+            load(Gdx.files.internal(CAR_SPEC_FILE));
+        }
+        final CarSpec spec = sSpecs.get(name);
+        if (spec == null) {
+            throw new GdxRuntimeException("No car spec named '" + name + "'");
+        }
+        return spec;
+    }
+
+    /**
+     * Parsing all archetypes from the spec file and putting them in to the cache, replacing old
+     * ones with the same name. Nothing is put in to the cache if any archetype is invalid
+     * @param file JSON spec file
+     */
+    public static synchronized void load(final FileHandle file) {
+        final JsonValue root = new JsonReader().parse(file);
+        final ObjectMap<String, CarSpec> specs = new ObjectMap<String, CarSpec>();
+        for (JsonValue json = root.child; json != null; json = json.next) {
+            specs.put(json.name, CarSpec.fromJson(json.name, json));
+        }
+        sSpecs.putAll(specs);
+    }
+
+    /**
+     * Putting already created spec in to the cache, replacing the old one with the same name
+     * @param spec car spec
+     */
+    public static synchronized void put(final CarSpec spec) {
+        sSpecs.put(spec.getName(), spec);
+    }
+
+    /**
+     * Removing all cached specs
+     */
+    public static synchronized void clear() {
+        sSpecs.clear();
+        sDefaultFileLoaded = false;
+    }
+}
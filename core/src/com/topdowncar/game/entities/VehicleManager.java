@@ -0,0 +1,462 @@
+package com.topdowncar.game.entities;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.topdowncar.game.tools.MapLoader;
+import com.topdowncar.game.tools.ShapeFactory;
+import com.topdowncar.game.tools.SpatialGrid;
+
+import java.nio.ByteBuffer;
+
+import static com.topdowncar.game.Constants.GRID_CELL_SIZE;
+import static com.topdowncar.game.Constants.PPM;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+
+/**
+ * Owner of all cars in one world. Every car lives in a slot, and input for the car is written in
+ * to that slot instead of to the car itself. All cars are updated in one pass before the world
+ * step, with drift of all wheels handled together by {@link VehicleState}. Idle cars are left to
+ * Box2D to put to sleep, and sleeping cars are skipped until they get input or are hit. Cars can
+ * have different {@link CarSpec}s. Removed cars are deactivated and kept for the next car added
+ * with the same spec, so adding and removing cars at runtime doesn't create new bodies
+ */
+public class VehicleManager implements Disposable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int CAR_HEADER_SIZE = 4 + 4 + 2;
+
+    private final World mWorld;
+    private final MapLoader mMapLoader;
+    private final CarSpec mDefaultSpec;
+
+    private Car[] mSlots = new Car[INITIAL_CAPACITY];
+    private int[] mDriveInputs = new int[INITIAL_CAPACITY];
+    private int[] mTurnInputs = new int[INITIAL_CAPACITY];
+    private int[] mActiveIndex = new int[INITIAL_CAPACITY];
+    private int[] mRestoreStamps = new int[INITIAL_CAPACITY];
+    private int mRestoreStamp;
+    private int mSlotCount;
+
+    private final IntArray mActiveSlots = new IntArray(INITIAL_CAPACITY);
+    private final IntArray mFreeSlots = new IntArray();
+    private final ObjectMap<CarSpec, Array<Car>> mFreeCars = new ObjectMap<CarSpec, Array<Car>>();
+    private final Vector2 mSpawnPosition = new Vector2();
+    private final VehicleState mWheelState = new VehicleState();
+    private boolean mWheelStateDirty = true;
+    private boolean mSleepingAllowed = true;
+    private final SpatialGrid mCarGrid;
+
+    /**
+     * Main VehicleManager constructor
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * @param mapLoader {@link MapLoader} used to get car spawn position from the map
+     * @param defaultSpec {@link CarSpec} of cars added with {@link #addCar(float, float)}
+     */
+    public VehicleManager(final World world, final MapLoader mapLoader, final CarSpec defaultSpec) {
+        this.mWorld = world;
+        this.mMapLoader = mapLoader;
+        this.mDefaultSpec = defaultSpec;
+
+        final Rectangle bounds = mapLoader.getMapData().getBounds(new Rectangle());
+        mCarGrid = new SpatialGrid(bounds.set(bounds.x / PPM, bounds.y / PPM, bounds.width / PPM, bounds.height / PPM), GRID_CELL_SIZE);
+    }
+
+    /**
+     * Adding a car with the default spec to the world, reusing previously removed car if there is one
+     * @param offsetX horizontal offset from player position in the map, in pixels
+     * @param offsetY vertical offset from player position in the map, in pixels
+     * @return slot of the new car, used to set its input and to remove it
+     */
+    public int addCar(final float offsetX, final float offsetY) {
+        return addCar(mDefaultSpec, offsetX, offsetY);
+    }
+
+    /**
+     * Adding a car to the world, reusing previously removed car with the same spec if there is one
+     * @param spec {@link CarSpec} of the car
+     * @param offsetX horizontal offset from player position in the map, in pixels
+     * @param offsetY vertical offset from player position in the map, in pixels
+     * @return slot of the new car, used to set its input and to remove it. Also set as ID of the car
+     */
+    public int addCar(final CarSpec spec, final float offsetX, final float offsetY) {
+        final Array<Car> freeCars = mFreeCars.get(spec);
+        final Car car;
+        if (freeCars != null && freeCars.size > 0) {
+            car = freeCars.pop();
+            mMapLoader.getPlayerPosition(mSpawnPosition);
+            car.reset((mSpawnPosition.x + offsetX) / PPM, (mSpawnPosition.y + offsetY) / PPM, 0);
+            car.setActive(true);
+        } else {
+            car = new Car(spec, createChassis(spec, offsetX, offsetY), mWorld);
+        }
+        car.setSleepingAllowed(mSleepingAllowed);
+
+        final int slot = mFreeSlots.size > 0 ? mFreeSlots.pop() : newSlot();
+        car.setId(slot);
+        car.setCollisionGroup(slot < -Short.MIN_VALUE ? (short) -(slot + 1) : ShapeFactory.NO_GROUP);
+        mSlots[slot] = car;
+        mDriveInputs[slot] = DRIVE_DIRECTION_NONE;
+        mTurnInputs[slot] = TURN_DIRECTION_NONE;
+        mActiveIndex[slot] = mActiveSlots.size;
+        mActiveSlots.add(slot);
+        mWheelStateDirty = true;
+        return slot;
+    }
+
+    /**
+     * Removing a car from the world. Car bodies are deactivated and kept for reuse
+     * @param slot slot of the car received from {@link #addCar(float, float)}
+     */
+    public void removeCar(final int slot) {
+        final Car car = getCar(slot);
+        car.setActive(false);
+        Array<Car> freeCars = mFreeCars.get(car.getSpec());
+        if (freeCars == null) {
+            freeCars = new Array<Car>();
+            mFreeCars.put(car.getSpec(), freeCars);
+        }
+        freeCars.add(car);
+        mSlots[slot] = null;
+        mFreeSlots.add(slot);
+
+        // swap last active slot in to the place of removed one, so active slots stay packed
+        final int index = mActiveIndex[slot];
+        final int lastSlot = mActiveSlots.pop();
+        if (lastSlot != slot) {
+            mActiveSlots.set(index, lastSlot);
+            mActiveIndex[lastSlot] = index;
+        }
+        mWheelStateDirty = true;
+    }
+
+    /**
+     * Setting input for the car in the given slot. Input is applied in the next {@link #update(float)}
+     * @param slot slot of the car
+     * @param driveDirection drive direction, one of Car.DRIVE_DIRECTION_ values
+     * @param turnDirection turn direction, one of Car.TURN_DIRECTION_ values
+     */
+    public void setInput(final int slot, final int driveDirection, final int turnDirection) {
+        getCar(slot);
+        mDriveInputs[slot] = driveDirection;
+        mTurnInputs[slot] = turnDirection;
+    }
+
+    /**
+     * Returning drive direction set for the car in the given slot
+     * @param slot slot of the car
+     * @return one of Car.DRIVE_DIRECTION_ values
+     */
+    public int getDriveInput(final int slot) {
+        getCar(slot);
+        return mDriveInputs[slot];
+    }
+
+    /**
+     * Returning turn direction set for the car in the given slot
+     * @param slot slot of the car
+     * @return one of Car.TURN_DIRECTION_ values
+     */
+    public int getTurnInput(final int slot) {
+        getCar(slot);
+        return mTurnInputs[slot];
+    }
+
+    /**
+     * Updating all active cars with their input. Called once before world step. Spatial index of
+     * the cars is rebuilt here as well, so queries see car positions from before the last step
+     * @param delta time that is about to be simulated
+     */
+    public void update(final float delta) {
+        final int[] activeSlots = mActiveSlots.items;
+        mCarGrid.clear();
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            final Vector2 position = mSlots[activeSlots[i]].getBody().getPosition();
+            mCarGrid.insert(activeSlots[i], position.x, position.y);
+        }
+
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            final int slot = activeSlots[i];
+            final Car car = mSlots[slot];
+            car.setDriveDirection(mDriveInputs[slot]);
+            car.setTurnDirection(mTurnInputs[slot]);
+            car.prepareStep(delta);
+        }
+
+        if (mWheelStateDirty) {
+            mWheelState.clear();
+            for (int i = 0; i < mActiveSlots.size; i++) {
+                mWheelState.addWheels(mSlots[activeSlots[i]]);
+            }
+            mWheelStateDirty = false;
+        }
+        mWheelState.update();
+    }
+
+    /**
+     * Allowing or disallowing idle cars to sleep, for all current and future cars. See
+     * {@link Car#setSleepingAllowed(boolean)}
+     * @param allowed true to allow sleeping
+     */
+    public void setSleepingAllowed(final boolean allowed) {
+        this.mSleepingAllowed = allowed;
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            mSlots[mActiveSlots.get(i)].setSleepingAllowed(allowed);
+        }
+        for (final Array<Car> freeCars : mFreeCars.values()) {
+            for (int i = 0; i < freeCars.size; i++) {
+                freeCars.get(i).setSleepingAllowed(allowed);
+            }
+        }
+    }
+
+    /**
+     * Returning number of cars skipped in the last {@link #update(float)} because they are asleep
+     * @return resting car count
+     */
+    public int getRestingCount() {
+        int count = 0;
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            if (mSlots[mActiveSlots.get(i)].isResting()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returning number of bytes written by {@link #saveState(ByteBuffer)} for current cars
+     * @return state size in bytes
+     */
+    public int getStateSize() {
+        int size = 4;
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            size += CAR_HEADER_SIZE + mSlots[mActiveSlots.get(i)].getStateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writing state of all active cars, together with their slots, state sizes and input, to the
+     * buffer
+     * @param out buffer to write to, with at least {@link #getStateSize()} bytes remaining
+     */
+    public void saveState(final ByteBuffer out) {
+        out.putInt(mActiveSlots.size);
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            final int slot = mActiveSlots.get(i);
+            out.putInt(slot).putInt(mSlots[slot].getStateSize()).put((byte) mDriveInputs[slot]).put((byte) mTurnInputs[slot]);
+            mSlots[slot].saveState(out);
+        }
+    }
+
+    /**
+     * Reading state written by {@link #saveState(ByteBuffer)} and applying it to the cars in place.
+     * Same cars must be active as when the state was saved, since no cars are added or removed.
+     * Whole state is checked before anything is applied, so a state that doesn't match leaves all
+     * cars and the buffer untouched
+     * @param in buffer to read from
+     */
+    public void restoreState(final ByteBuffer in) {
+        checkState(in);
+        final int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            final int slot = in.getInt();
+            in.getInt();
+            mDriveInputs[slot] = in.get();
+            mTurnInputs[slot] = in.get();
+            mSlots[slot].restoreState(in);
+        }
+    }
+
+    /**
+     * Checking that state in the buffer holds every active car exactly once, and that the state of
+     * each car has the size that car writes, without changing buffer position
+     * @param in buffer with state written by {@link #saveState(ByteBuffer)}
+     */
+    private void checkState(final ByteBuffer in) {
+        int position = in.position();
+        if (in.limit() - position < 4) {
+            throw new IllegalArgumentException("State is too short");
+        }
+        final int count = in.getInt(position);
+        if (count != mActiveSlots.size) {
+            throw new IllegalArgumentException("State has " + count + " cars, but " + mActiveSlots.size + " are active");
+        }
+        position += 4;
+        mRestoreStamp++;
+        for (int i = 0; i < count; i++) {
+            if (in.limit() - position < CAR_HEADER_SIZE) {
+                throw new IllegalArgumentException("State is too short for " + count + " cars");
+            }
+            final int slot = in.getInt(position);
+            final int size = in.getInt(position + 4);
+            if (!hasCar(slot)) {
+                throw new IllegalArgumentException("State has car in slot " + slot + ", which is empty");
+            }
+            if (mRestoreStamps[slot] == mRestoreStamp) {
+                throw new IllegalArgumentException("State has car in slot " + slot + " more than once");
+            }
+            if (size != mSlots[slot].getStateSize()) {
+                throw new IllegalArgumentException("State of car in slot " + slot + " has " + size + " bytes, car needs "
+                        + mSlots[slot].getStateSize());
+            }
+            mRestoreStamps[slot] = mRestoreStamp;
+            position += CAR_HEADER_SIZE;
+            if (in.limit() - position < size) {
+                throw new IllegalArgumentException("State is too short for car in slot " + slot);
+            }
+            position += size;
+        }
+    }
+
+    /**
+     * Returning car in the given slot
+     * @param slot slot of the car
+     * @return car in the slot
+     */
+    public Car getCar(final int slot) {
+        if (!hasCar(slot)) {
+            throw new IllegalArgumentException("No car in slot " + slot);
+        }
+        return mSlots[slot];
+    }
+
+    /**
+     * Checking if there is a car in the given slot
+     * @param slot slot to check, can be any number
+     * @return true if the slot holds an active car
+     */
+    public boolean hasCar(final int slot) {
+        return slot >= 0 && slot < mSlotCount && mSlots[slot] != null;
+    }
+
+    /**
+     * Finding cars which center was inside or near the area at the last {@link #update(float)}.
+     * Callers should grow the area by the car size and by the distance a car can travel in one
+     * step if they need every car touching the area
+     * @param area area to search, in world units
+     * @param out array to which slots of found cars are added
+     * @return out array, for chaining
+     */
+    public IntArray queryCars(final Rectangle area, final IntArray out) {
+        final int start = out.size;
+        mCarGrid.query(area, out);
+        for (int i = out.size - 1; i >= start; i--) {
+            if (mSlots[out.get(i)] == null) {
+                out.removeIndex(i);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returning slots of all active cars. Array is owned by the manager and must not be modified
+     * @return active slots
+     */
+    public IntArray getActiveSlots() {
+        return mActiveSlots;
+    }
+
+    /**
+     * Returning number of active cars
+     * @return active car count
+     */
+    public int getCarCount() {
+        return mActiveSlots.size;
+    }
+
+    /**
+     * Destroying all removed cars kept for reuse, freeing their bodies and joints
+     */
+    public void clearPool() {
+        for (final Array<Car> freeCars : mFreeCars.values()) {
+            for (int i = 0; i < freeCars.size; i++) {
+                freeCars.get(i).dispose();
+            }
+            freeCars.clear();
+        }
+    }
+
+    /**
+     * Returning number of removed cars kept for reuse
+     * @return pooled car count
+     */
+    public int getPooledCount() {
+        int count = 0;
+        for (final Array<Car> freeCars : mFreeCars.values()) {
+            count += freeCars.size;
+        }
+        return count;
+    }
+
+    /**
+     * Destroying all cars, active and pooled. Slots are freed, and manager can be used again
+     */
+    @Override
+    public void dispose() {
+        for (int i = 0; i < mActiveSlots.size; i++) {
+            final int slot = mActiveSlots.get(i);
+            mSlots[slot].dispose();
+            mSlots[slot] = null;
+            mFreeSlots.add(slot);
+        }
+        mActiveSlots.clear();
+        mWheelStateDirty = true;
+        clearPool();
+    }
+
+    /**
+     * Creating chassis body of a new car, using player rectangle from the map unless spec sets
+     * its own chassis size
+     * @param spec {@link CarSpec} of the car
+     * @param offsetX horizontal offset from player position in the map, in pixels
+     * @param offsetY vertical offset from player position in the map, in pixels
+     * @return chassis body
+     */
+    private Body createChassis(final CarSpec spec, final float offsetX, final float offsetY) {
+        if (!spec.hasChassisSize()) {
+            return mMapLoader.getPlayer(offsetX, offsetY);
+        }
+        mMapLoader.getPlayerPosition(mSpawnPosition).add(offsetX, offsetY);
+        return ShapeFactory.createRectangle(mSpawnPosition, new Vector2(spec.getHalfWidth(), spec.getHalfHeight()),
+                BodyDef.BodyType.DynamicBody, mWorld, spec.getDensity(), false, ShapeFactory.ENTITY_CHASSIS);
+    }
+
+    /**
+     * Creating new slot, growing slot arrays if needed
+     * @return new slot
+     */
+    private int newSlot() {
+        if (mSlotCount == mSlots.length) {
+            final int capacity = mSlotCount * 2;
+            final Car[] slots = new Car[capacity];
+            System.arraycopy(mSlots, 0, slots, 0, mSlotCount);
+            mSlots = slots;
+            mDriveInputs = grow(mDriveInputs, capacity);
+            mTurnInputs = grow(mTurnInputs, capacity);
+            mActiveIndex = grow(mActiveIndex, capacity);
+            mRestoreStamps = grow(mRestoreStamps, capacity);
+        }
+        return mSlotCount++;
+    }
+
+    /**
+     * Copying int array to a bigger one
+     * @param array array to copy
+     * @param capacity new array size
+     * @return new array
+     */
+    private static int[] grow(final int[] array, final int capacity) {
+        final int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -0,0 +1,79 @@
+package com.topdowncar.game.entities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable buffer holding full state of all cars of a {@link VehicleManager}: position, angle,
+ * velocities and awake flag of every chassis and wheel body, steering motor speeds and input.
+ * Restoring puts cars back in place, without creating bodies or rebuilding the world, so it can be
+ * used for instant race restarts, rollback and training episode resets. Box2D keeps contact and
+ * solver warm starting data that can't be read, so steps after a restore can slightly differ from
+ * steps after the original save, and the difference grows in long runs with many collisions
+ */
+public class VehicleSnapshot {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private ByteBuffer mBuffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private long mStep;
+
+    /**
+     * Main VehicleSnapshot constructor, creating empty snapshot
+     */
+    public VehicleSnapshot() {
+        mBuffer.limit(0);
+    }
+
+    /**
+     * Saving state of all cars, growing the buffer if needed
+     * @param vehicles {@link VehicleManager} holding the cars
+     * @param step step number at which the snapshot is taken, returned by {@link #getStep()}
+     */
+    public void save(final VehicleManager vehicles, final long step) {
+        final int size = vehicles.getStateSize();
+        if (mBuffer.capacity() < size) {
+            mBuffer = ByteBuffer.allocate(Math.max(size, mBuffer.capacity() * 2));
+        }
+        mBuffer.clear();
+        vehicles.saveState(mBuffer);
+        mBuffer.flip();
+        mStep = step;
+    }
+
+    /**
+     * Restoring saved state of all cars in place. Can be done any number of times
+     * @param vehicles {@link VehicleManager} holding the same cars as when the snapshot was saved
+     */
+    public void restore(final VehicleManager vehicles) {
+        if (mBuffer.limit() == 0) {
+            throw new IllegalStateException("Snapshot is empty");
+        }
+        mBuffer.rewind();
+        vehicles.restoreState(mBuffer);
+    }
+
+    /**
+     * Returning step number at which the snapshot was taken
+     * @return step number
+     */
+    public long getStep() {
+        return mStep;
+    }
+
+    /**
+     * Returning size of saved state
+     * @return size in bytes
+     */
+    public int getSize() {
+        return mBuffer.limit();
+    }
+
+    /**
+     * Returning buffer holding saved state, from position 0 to its limit. Can be used to send or
+     * store the state, and must not be modified
+     * @return state buffer
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+}
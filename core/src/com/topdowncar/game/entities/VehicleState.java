@@ -0,0 +1,187 @@
+package com.topdowncar.game.entities;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+
+import static com.topdowncar.game.BodyHolder.DRIFT_OFFSET;
+
+/**
+ * Drift state of many wheels kept in primitive arrays, one entry per wheel. Instead of every
+ * {@link Wheel} asking its body for world vectors and velocity several times, velocities and
+ * angles of all wheels are read in one pass, drift math runs over plain float arrays, and new
+ * velocities are written back in one more pass. Does the same thing as
+ * {@link com.topdowncar.game.BodyHolder#update(float)}, but with one read of velocity and angle
+ * and one write of velocity per wheel
+ */
+public class VehicleState {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Body[] mBodies = new Body[INITIAL_CAPACITY];
+    private Car[] mCars = new Car[INITIAL_CAPACITY];
+    private float[] mDrift = new float[INITIAL_CAPACITY];
+    private boolean[] mKillDrift = new boolean[INITIAL_CAPACITY];
+    private float[] mVelocityX = new float[INITIAL_CAPACITY];
+    private float[] mVelocityY = new float[INITIAL_CAPACITY];
+    private float[] mAngle = new float[INITIAL_CAPACITY];
+    private int mSize;
+
+    /**
+     * Removing all wheels
+     */
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mBodies[i] = null;
+            mCars[i] = null;
+        }
+        mSize = 0;
+    }
+
+    /**
+     * Adding all wheels of the car which drift is not total. Wheels with total drift keep their
+     * velocity, so there is nothing to do for them
+     * @param car car which wheels to add
+     */
+    public void addWheels(final Car car) {
+        for (int i = 0; i < car.getWheels().size; i++) {
+            final Wheel wheel = car.getWheels().get(i);
+            if (wheel.getDrift() < 1) {
+                add(car, wheel.getBody(), wheel.getDrift(), wheel.canKillDrift());
+            }
+        }
+    }
+
+    /**
+     * Adding one body entry
+     * @param car car owning the wheel
+     * @param body wheel body
+     * @param drift drift value (0 - no drift, 1 - total drift)
+     * @param killDrift should small sideways velocity be killed
+     */
+    private void add(final Car car, final Body body, final float drift, final boolean killDrift) {
+        if (mSize == mBodies.length) {
+            grow(mSize * 2);
+        }
+        mBodies[mSize] = body;
+        mCars[mSize] = car;
+        mDrift[mSize] = drift;
+        mKillDrift[mSize] = killDrift;
+        mSize++;
+    }
+
+    /**
+     * Doing drift update for all wheels: reading body state, handling drift and writing
+     * velocities back to the bodies
+     */
+    public void update() {
+        read();
+        handleDrift();
+        write();
+    }
+
+    /**
+     * Reading velocity and angle of every body. Wheels of resting cars are asleep and have no
+     * velocity, so they are skipped here and in {@link #write()}
+     */
+    private void read() {
+        for (int i = 0; i < mSize; i++) {
+            if (mCars[i].isResting()) {
+                mVelocityX[i] = 0;
+                mVelocityY[i] = 0;
+                mAngle[i] = 0;
+                continue;
+            }
+            final Body body = mBodies[i];
+            final Vector2 velocity = body.getLinearVelocity();
+            mVelocityX[i] = velocity.x;
+            mVelocityY[i] = velocity.y;
+            mAngle[i] = body.getAngle();
+        }
+    }
+
+    /**
+     * Splitting velocity in to forward part, along body local y axis, and sideways part, along
+     * local x axis. Sideways part is reduced by the drift, or killed if it is small enough
+     */
+    private void handleDrift() {
+        final float[] velocityX = mVelocityX;
+        final float[] velocityY = mVelocityY;
+        final float[] angles = mAngle;
+        final float[] drift = mDrift;
+        final boolean[] killDrift = mKillDrift;
+        final float driftOffset2 = DRIFT_OFFSET * DRIFT_OFFSET;
+
+        for (int i = 0; i < mSize; i++) {
+            final float cos = (float) Math.cos(angles[i]);
+            final float sin = (float) Math.sin(angles[i]);
+            final float vx = velocityX[i];
+            final float vy = velocityY[i];
+
+            // forward normal is (-sin, cos), lateral normal is (cos, sin)
+            final float forwardDot = -sin * vx + cos * vy;
+            final float lateralDot = cos * vx + sin * vy;
+            final float forwardX = -sin * forwardDot;
+            final float forwardY = cos * forwardDot;
+
+            if (killDrift[i] && lateralDot * lateralDot < driftOffset2) {
+                velocityX[i] = forwardX;
+                velocityY[i] = forwardY;
+            } else {
+                velocityX[i] = forwardX + cos * lateralDot * drift[i];
+                velocityY[i] = forwardY + sin * lateralDot * drift[i];
+            }
+        }
+    }
+
+    /**
+     * Writing new velocity to every body
+     */
+    private void write() {
+        for (int i = 0; i < mSize; i++) {
+            if (mCars[i].isResting()) {
+                continue;
+            }
+            mBodies[i].setLinearVelocity(mVelocityX[i], mVelocityY[i]);
+        }
+    }
+
+    /**
+     * Returning number of wheel entries
+     * @return entry count
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Growing all arrays to the new capacity
+     * @param capacity new capacity
+     */
+    private void grow(final int capacity) {
+        final Body[] bodies = new Body[capacity];
+        System.arraycopy(mBodies, 0, bodies, 0, mSize);
+        mBodies = bodies;
+        final Car[] cars = new Car[capacity];
+        System.arraycopy(mCars, 0, cars, 0, mSize);
+        mCars = cars;
+        final boolean[] killDrift = new boolean[capacity];
+        System.arraycopy(mKillDrift, 0, killDrift, 0, mSize);
+        mKillDrift = killDrift;
+        mDrift = grow(mDrift, capacity);
+        mVelocityX = new float[capacity];
+        mVelocityY = new float[capacity];
+        mAngle = new float[capacity];
+    }
+
+    /**
+     * Copying float array to a bigger one
+     * @param array array to copy
+     * @param capacity new array size
+     * @return new array
+     */
+    private float[] grow(final float[] array, final int capacity) {
+        final float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, mSize);
+        return newArray;
+    }
+}
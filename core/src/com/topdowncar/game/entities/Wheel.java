@@ -4,6 +4,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.World;
 import com.topdowncar.game.BodyHolder;
+import com.topdowncar.game.tools.ShapeFactory;
 
 public class Wheel extends BodyHolder {
     public static final int UPPER_LEFT = 0;
@@ -13,9 +14,8 @@ public class Wheel extends BodyHolder {
 
     private static final float WHEEL_DENSITY = 0.4f;
 
-    private static final float DEGTORAD = 0.0174532925199432957f;
-
     private final boolean mPowered;
+    private final boolean mKillDrift;
     private final Car mCar;
 
     /**
@@ -24,21 +24,28 @@ public class Wheel extends BodyHolder {
      * @param size wheel size
      * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      * @param id wheel unique IS
-     * @param car {@link Car} class used to set correct wheel angle depending of car rotation
+     * @param car {@link Car} this wheel belongs to
      * @param powered is wheel powered or not
+     * @param killDrift is small sideways velocity of the wheel killed
      */
-    public Wheel(final Vector2 position, final Vector2 size, final World world, final int id, final Car car, final boolean powered) {
-        super(position, size, BodyDef.BodyType.DynamicBody, world, WHEEL_DENSITY, true, id);
+    public Wheel(final Vector2 position, final Vector2 size, final World world, final int id, final Car car, final boolean powered, final boolean killDrift) {
+        super(position, size, BodyDef.BodyType.DynamicBody, world, WHEEL_DENSITY, true, ShapeFactory.ENTITY_WHEEL, id);
         this.mCar = car;
         this.mPowered = powered;
+        this.mKillDrift = killDrift;
+    }
+
+    @Override
+    public boolean canKillDrift() {
+        return mKillDrift;
     }
 
     /**
-     * Set wheel angle
-     * @param angle angle to which to rotate the wheel
+     * Returning car this wheel belongs to
+     * @return owner car
      */
-    public void setAngle(final float angle) {
-        getBody().setTransform(getBody().getPosition(), mCar.getBody().getAngle() + angle * DEGTORAD);
+    public Car getCar() {
+        return mCar;
     }
 
     /**
@@ -0,0 +1,236 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.Disposable;
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.simulation.InputScript;
+import com.topdowncar.game.simulation.Simulation;
+
+import static com.topdowncar.game.Constants.STEP_TIME;
+import static com.topdowncar.game.network.NetProtocol.NO_SEQUENCE;
+
+/**
+ * Client side of a networked game. Only the local car is simulated: it is stepped right away with
+ * the player input, which is sent to {@link GameServer} at the same time, so the car responds
+ * without waiting for the server. Pose after every input is remembered, and when a snapshot says
+ * which input the server has applied, the server pose is compared with the remembered one. The
+ * difference is then blended in over the next steps, or applied at once if it is too big. Other
+ * cars are never simulated, they are shown through {@link SnapshotInterpolator}
+ */
+public class ClientGame implements Disposable, InputScript {
+
+    private static final int HISTORY_SIZE = 64;
+    private static final int NO_SLOT = -1;
+    private static final float CORRECTION_RATE = 0.1f;
+    private static final float SNAP_DISTANCE = 4f;
+    private static final float SNAP_ANGLE = 1f;
+    private static final float MIN_CORRECTION = 0.001f;
+
+    private final NetworkClient mClient;
+    private final Simulation mSimulation;
+    private final SnapshotInterpolator mInterpolator = new SnapshotInterpolator();
+    private final int[] mPredictedSequence = new int[HISTORY_SIZE];
+    private final float[] mPredictedX = new float[HISTORY_SIZE];
+    private final float[] mPredictedY = new float[HISTORY_SIZE];
+    private final float[] mPredictedAngle = new float[HISTORY_SIZE];
+    private final float[] mCorrectedX = new float[HISTORY_SIZE];
+    private final float[] mCorrectedY = new float[HISTORY_SIZE];
+    private final float[] mCorrectedAngle = new float[HISTORY_SIZE];
+    private final Vector2 mError = new Vector2();
+    private final Vector2 mTotalCorrection = new Vector2();
+    private float mAngleError;
+    private float mTotalAngleCorrection;
+    private float mLastErrorDistance;
+    private int mLocalSlot = NO_SLOT;
+    private int mDriveDirection;
+    private int mTurnDirection;
+    private long mSnapshotCount;
+
+    /**
+     * Main ClientGame constructor. Map is loaded through {@link com.badlogic.gdx.Gdx#files}
+     * @param host server host name or address
+     * @param port server port
+     */
+    public ClientGame(final String host, final int port) {
+        mClient = new NetworkClient(host, port);
+        mSimulation = new Simulation(0, this);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            mPredictedSequence[i] = NO_SEQUENCE;
+        }
+    }
+
+    /**
+     * Running one fixed client step: handling received snapshots, and once the local car is
+     * spawned, sending the input and simulating the local car with it
+     * @param driveDirection drive direction, one of Car.DRIVE_DIRECTION_ values
+     * @param turnDirection turn direction, one of Car.TURN_DIRECTION_ values
+     */
+    public void tick(final int driveDirection, final int turnDirection) {
+        mClient.update();
+        if (mClient.getSnapshotsReceived() != mSnapshotCount) {
+            mSnapshotCount = mClient.getSnapshotsReceived();
+            mInterpolator.add(mClient.getLatestFrame(), mClient.getServerTick());
+            reconcile(mClient.getLatestFrame());
+        }
+        mInterpolator.advance(STEP_TIME);
+        if (mLocalSlot == NO_SLOT) {
+            return;
+        }
+
+        mDriveDirection = driveDirection;
+        mTurnDirection = turnDirection;
+        final int sequence = mClient.sendInput(driveDirection, turnDirection);
+        applyCorrection();
+        mSimulation.step(STEP_TIME);
+
+        final Body body = getLocalCar().getBody();
+        final int index = sequence % HISTORY_SIZE;
+        mPredictedSequence[index] = sequence;
+        mPredictedX[index] = body.getPosition().x;
+        mPredictedY[index] = body.getPosition().y;
+        mPredictedAngle[index] = body.getAngle();
+        mCorrectedX[index] = mTotalCorrection.x;
+        mCorrectedY[index] = mTotalCorrection.y;
+        mCorrectedAngle[index] = mTotalAngleCorrection;
+    }
+
+    /**
+     * Comparing server pose of the local car with the predicted pose after the same input.
+     * Corrections applied since that input are already part of the current pose, so they are
+     * taken out of the error. Local car is spawned at the server pose from the first snapshot
+     * that has it
+     * @param frame received frame
+     */
+    private void reconcile(final SnapshotFrame frame) {
+        final int slot = mClient.getSlot();
+        if (!frame.isPresent(slot)) {
+            return;
+        }
+        final float serverX = NetProtocol.dequantisePosition(frame.getX(slot));
+        final float serverY = NetProtocol.dequantisePosition(frame.getY(slot));
+        final float serverAngle = NetProtocol.dequantiseAngle(frame.getAngle(slot));
+        if (mLocalSlot == NO_SLOT) {
+            mLocalSlot = mSimulation.getVehicles().addCar(0, 0);
+            getLocalCar().reset(serverX, serverY, serverAngle);
+            return;
+        }
+
+        final int sequence = mClient.getLastProcessedInput();
+        final int index = sequence % HISTORY_SIZE;
+        if (sequence == NO_SEQUENCE || mPredictedSequence[index] != sequence) {
+            return;
+        }
+        mError.set(serverX - mPredictedX[index] - (mTotalCorrection.x - mCorrectedX[index]),
+                serverY - mPredictedY[index] - (mTotalCorrection.y - mCorrectedY[index]));
+        mAngleError = wrapAngle(serverAngle - mPredictedAngle[index]) - (mTotalAngleCorrection - mCorrectedAngle[index]);
+        mLastErrorDistance = mError.len();
+    }
+
+    /**
+     * Moving local car by part of the remaining error, or by all of it if it is too big to hide
+     */
+    private void applyCorrection() {
+        if (mError.isZero(MIN_CORRECTION) && Math.abs(mAngleError) < MIN_CORRECTION) {
+            return;
+        }
+        final float rate = mError.len() > SNAP_DISTANCE || Math.abs(mAngleError) > SNAP_ANGLE ? 1 : CORRECTION_RATE;
+        final float dx = mError.x * rate;
+        final float dy = mError.y * rate;
+        final float dAngle = mAngleError * rate;
+        getLocalCar().moveBy(dx, dy, dAngle);
+        mError.sub(dx, dy);
+        mAngleError -= dAngle;
+        mTotalCorrection.add(dx, dy);
+        mTotalAngleCorrection += dAngle;
+    }
+
+    /**
+     * Wrapping angle to the range from -PI to PI
+     * @param angle angle in radians
+     * @return wrapped angle
+     */
+    private static float wrapAngle(final float angle) {
+        float wrapped = angle % MathUtils.PI2;
+        if (wrapped > MathUtils.PI) {
+            wrapped -= MathUtils.PI2;
+        } else if (wrapped < -MathUtils.PI) {
+            wrapped += MathUtils.PI2;
+        }
+        return wrapped;
+    }
+
+    @Override
+    public int getDriveDirection(final long step, final int carIndex) {
+        return mDriveDirection;
+    }
+
+    @Override
+    public int getTurnDirection(final long step, final int carIndex) {
+        return mTurnDirection;
+    }
+
+    /**
+     * Checking if local car is spawned and predicted
+     * @return true if local car exists
+     */
+    public boolean hasLocalCar() {
+        return mLocalSlot != NO_SLOT;
+    }
+
+    /**
+     * Returning predicted local car
+     * @return local car
+     */
+    public Car getLocalCar() {
+        return mSimulation.getVehicles().getCar(mLocalSlot);
+    }
+
+    /**
+     * Returning slot of the local car on the server, which should be skipped when drawing cars
+     * from {@link #getInterpolator()}
+     * @return server slot, or -1 if not joined yet
+     */
+    public int getServerSlot() {
+        return mClient.getSlot();
+    }
+
+    /**
+     * Returning interpolator from which other cars are drawn
+     * @return snapshot interpolator
+     */
+    public SnapshotInterpolator getInterpolator() {
+        return mInterpolator;
+    }
+
+    /**
+     * Returning simulation holding only the local car
+     * @return client simulation
+     */
+    public Simulation getSimulation() {
+        return mSimulation;
+    }
+
+    /**
+     * Returning network client used to talk to the server
+     * @return network client
+     */
+    public NetworkClient getClient() {
+        return mClient;
+    }
+
+    /**
+     * Returning distance between predicted and server position found in the last reconciliation
+     * @return prediction error in world units
+     */
+    public float getLastErrorDistance() {
+        return mLastErrorDistance;
+    }
+
+    @Override
+    public void dispose() {
+        mClient.dispose();
+        mSimulation.dispose();
+    }
+}
@@ -0,0 +1,397 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.simulation.InputScript;
+import com.topdowncar.game.simulation.Simulation;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+
+import static com.topdowncar.game.Constants.STEP_TIME;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_BACKWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_RIGHT;
+import static com.topdowncar.game.network.NetProtocol.MAX_PACKET_SIZE;
+import static com.topdowncar.game.network.NetProtocol.NO_SEQUENCE;
+import static com.topdowncar.game.network.NetProtocol.TYPE_INPUT;
+import static com.topdowncar.game.network.NetProtocol.TYPE_JOIN;
+import static com.topdowncar.game.network.NetProtocol.TYPE_LEAVE;
+import static com.topdowncar.game.network.NetProtocol.TYPE_SNAPSHOT;
+import static com.topdowncar.game.network.NetProtocol.TYPE_WELCOME;
+
+/**
+ * Authoritative game server. Owns the only {@link Simulation}, steps it with a fixed tick, and
+ * drives every car with the inputs its client sent, one input per tick in sequence order, so the
+ * server runs through the same inputs as the predicting client. Every few ticks each client gets a
+ * snapshot of the cars around its own car, written as a delta against the last snapshot the
+ * client confirmed, so bandwidth and work per client depend on the number of nearby cars that
+ * moved and not on the total number of cars. Uses one non-blocking UDP channel and never waits
+ * on the network, so {@link #tick()} can be called from any fixed step loop
+ */
+public class GameServer implements Disposable, InputScript {
+
+    private static final int HISTORY_SIZE = 32;
+    private static final int INPUT_QUEUE_SIZE = 16;
+    private static final int SNAPSHOT_INTERVAL = 2;
+    private static final float AREA_HALF_SIZE = 40f;
+    private static final int CLIENT_TIMEOUT_TICKS = (int) (5 / STEP_TIME);
+    private static final int HEADER_SIZE = 1 + 4 * 4;
+
+    private final Simulation mSimulation;
+    private final DatagramChannel mChannel;
+    private final ByteBuffer mReceiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final ByteBuffer mSendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final ObjectMap<SocketAddress, ClientConnection> mClientsByAddress = new ObjectMap<SocketAddress, ClientConnection>();
+    private final Array<ClientConnection> mClients = new Array<ClientConnection>();
+    private final SnapshotFrame mTargetFrame = new SnapshotFrame();
+    private final SnapshotFrame mEmptyFrame = new SnapshotFrame();
+    private final IntArray mAreaSlots = new IntArray();
+    private final Rectangle mArea = new Rectangle();
+    private int[] mDriveInputs = new int[0];
+    private int[] mTurnInputs = new int[0];
+    private int mTick;
+    private int mJoinCount;
+    private long mBytesSent;
+    private long mPacketsSent;
+
+    /**
+     * Main GameServer constructor. Map is loaded through {@link com.badlogic.gdx.Gdx#files}, so the
+     * server has to run inside a libGDX application, like a headless one
+     * @param port UDP port to listen on, or 0 to pick any free port
+     */
+    public GameServer(final int port) {
+        this(port, false);
+    }
+
+    /**
+     * GameServer constructor which can keep only walls around cars in the world, so a big map
+     * costs the server no more than the part of it where clients drive
+     * @param port UDP port to listen on, or 0 to pick any free port
+     * @param streamWalls true to stream walls around cars, false to create all walls up front
+     */
+    public GameServer(final int port, final boolean streamWalls) {
+        mSimulation = new Simulation(0, this, streamWalls);
+        try {
+            mChannel = DatagramChannel.open();
+            mChannel.configureBlocking(false);
+            mChannel.socket().bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            mSimulation.dispose();
+            throw new GdxRuntimeException("Unable to open server on port " + port, e);
+        }
+    }
+
+    /**
+     * Running one server tick: handling all received packets, taking the next queued input of
+     * every client, simulating one fixed step, sending
+     * snapshots if it's time to do so, and dropping clients that went silent
+     */
+    public void tick() {
+        receive();
+        for (int i = 0; i < mClients.size; i++) {
+            consumeInput(mClients.get(i));
+        }
+        mSimulation.step(STEP_TIME);
+        mTick++;
+        if (mTick % SNAPSHOT_INTERVAL == 0) {
+            for (int i = 0; i < mClients.size; i++) {
+                sendSnapshot(mClients.get(i));
+            }
+        }
+        for (int i = mClients.size - 1; i >= 0; i--) {
+            if (mTick - mClients.get(i).mLastHeardTick > CLIENT_TIMEOUT_TICKS) {
+                removeClient(mClients.get(i));
+            }
+        }
+    }
+
+    /**
+     * Handling all packets waiting in the channel. Malformed packets are ignored
+     */
+    private void receive() {
+        try {
+            SocketAddress address;
+            while ((address = mChannel.receive(mReceiveBuffer)) != null) {
+                mReceiveBuffer.flip();
+                try {
+                    handlePacket(address, mReceiveBuffer);
+                } catch (BufferUnderflowException e) {
+                    // truncated packet, nothing to do with it
+                }
+                mReceiveBuffer.clear();
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to receive packets", e);
+        }
+    }
+
+    /**
+     * Handling one received packet
+     * @param address address the packet came from
+     * @param in packet content
+     */
+    private void handlePacket(final SocketAddress address, final ByteBuffer in) {
+        final byte type = in.get();
+        ClientConnection client = mClientsByAddress.get(address);
+        if (type == TYPE_JOIN) {
+            if (client == null) {
+                client = addClient(address);
+            }
+            client.mLastHeardTick = mTick;
+            // join is sent until welcome arrives, so welcome is sent again for every join
+            mSendBuffer.clear();
+            mSendBuffer.put(TYPE_WELCOME).putInt(client.mSlot);
+            send(client.mAddress);
+            return;
+        }
+        if (client == null) {
+            return;
+        }
+        client.mLastHeardTick = mTick;
+        if (type == TYPE_INPUT) {
+            final int inputSequence = in.getInt();
+            final int ackSequence = in.getInt();
+            final int drive = in.get();
+            final int turn = in.get();
+            if (ackSequence > client.mAckSequence && ackSequence <= client.mSequence
+                    && client.mHistory[ackSequence % HISTORY_SIZE].getSequence() == ackSequence) {
+                client.mAckSequence = ackSequence;
+            }
+            // inputs too old for the queue would overwrite newer ones sharing their place
+            if (inputSequence > client.mInputSequence && inputSequence > client.mNewestInputSequence - INPUT_QUEUE_SIZE
+                    && drive >= DRIVE_DIRECTION_NONE && drive <= DRIVE_DIRECTION_BACKWARD && turn >= TURN_DIRECTION_NONE && turn <= TURN_DIRECTION_RIGHT) {
+                final int index = inputSequence % INPUT_QUEUE_SIZE;
+                client.mQueuedSequences[index] = inputSequence;
+                client.mQueuedDrives[index] = drive;
+                client.mQueuedTurns[index] = turn;
+                client.mNewestInputSequence = Math.max(client.mNewestInputSequence, inputSequence);
+            }
+        } else if (type == TYPE_LEAVE) {
+            removeClient(client);
+        }
+    }
+
+    /**
+     * Taking the oldest queued input of the client that wasn't used yet and setting it on its car.
+     * Inputs that never arrived are skipped, and so are inputs that were overwritten because the
+     * client got more than {@link #INPUT_QUEUE_SIZE} inputs ahead. If nothing is queued the car
+     * keeps its last input, and sequence reported to the client stays the same
+     * @param client client whose input to take
+     */
+    private void consumeInput(final ClientConnection client) {
+        final int first = Math.max(client.mInputSequence + 1, client.mNewestInputSequence - INPUT_QUEUE_SIZE + 1);
+        for (int sequence = first; sequence <= client.mNewestInputSequence; sequence++) {
+            final int index = sequence % INPUT_QUEUE_SIZE;
+            if (client.mQueuedSequences[index] == sequence) {
+                client.mInputSequence = sequence;
+                mDriveInputs[client.mSlot] = client.mQueuedDrives[index];
+                mTurnInputs[client.mSlot] = client.mQueuedTurns[index];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Spawning a car for a new client
+     * @param address address of the client
+     * @return new client connection
+     */
+    private ClientConnection addClient(final SocketAddress address) {
+        final int slot = mSimulation.addCar(mJoinCount++);
+        if (slot >= mDriveInputs.length) {
+            final int[] drive = new int[Math.max(slot + 1, mDriveInputs.length * 2)];
+            System.arraycopy(mDriveInputs, 0, drive, 0, mDriveInputs.length);
+            mDriveInputs = drive;
+            final int[] turn = new int[drive.length];
+            System.arraycopy(mTurnInputs, 0, turn, 0, mTurnInputs.length);
+            mTurnInputs = turn;
+        }
+        mDriveInputs[slot] = DRIVE_DIRECTION_NONE;
+        mTurnInputs[slot] = TURN_DIRECTION_NONE;
+        final ClientConnection client = new ClientConnection(address, slot);
+        mClientsByAddress.put(address, client);
+        mClients.add(client);
+        return client;
+    }
+
+    /**
+     * Removing client and its car
+     * @param client client to remove
+     */
+    private void removeClient(final ClientConnection client) {
+        mSimulation.getVehicles().removeCar(client.mSlot);
+        mDriveInputs[client.mSlot] = DRIVE_DIRECTION_NONE;
+        mTurnInputs[client.mSlot] = TURN_DIRECTION_NONE;
+        mClientsByAddress.remove(client.mAddress);
+        mClients.removeValue(client, true);
+    }
+
+    /**
+     * Sending cars around the client car as a delta against the last snapshot the client
+     * confirmed, or against an empty frame if there is none or it is too old. Frame that the client
+     * will have after reading the packet is decoded back from the packet itself and kept in the
+     * history, so cars left out of a full packet are sent again next time
+     * @param client client to send to
+     */
+    private void sendSnapshot(final ClientConnection client) {
+        final VehicleManager vehicles = mSimulation.getVehicles();
+        final Vector2 center = vehicles.getCar(client.mSlot).getBody().getPosition();
+        mArea.set(center.x - AREA_HALF_SIZE, center.y - AREA_HALF_SIZE, AREA_HALF_SIZE * 2, AREA_HALF_SIZE * 2);
+        mAreaSlots.clear();
+        vehicles.queryCars(mArea, mAreaSlots);
+
+        mTargetFrame.clear();
+        for (int i = 0; i < mAreaSlots.size; i++) {
+            final int slot = mAreaSlots.get(i);
+            final Body body = vehicles.getCar(slot).getBody();
+            final Vector2 position = body.getPosition();
+            mTargetFrame.set(slot, NetProtocol.quantisePosition(position.x), NetProtocol.quantisePosition(position.y),
+                    NetProtocol.quantiseAngle(body.getAngle()));
+        }
+
+        final int sequence = ++client.mSequence;
+        final SnapshotFrame baseline = client.mAckSequence != NO_SEQUENCE && sequence - client.mAckSequence < HISTORY_SIZE
+                ? client.mHistory[client.mAckSequence % HISTORY_SIZE] : mEmptyFrame;
+        mSendBuffer.clear();
+        mSendBuffer.put(TYPE_SNAPSHOT).putInt(sequence).putInt(baseline.getSequence()).putInt(mTick).putInt(client.mInputSequence);
+        SnapshotFrame.writeDelta(baseline, mTargetFrame, mSendBuffer);
+
+        final int end = mSendBuffer.position();
+        mSendBuffer.position(HEADER_SIZE);
+        client.mHistory[sequence % HISTORY_SIZE].readDelta(baseline, sequence, mSendBuffer);
+        mSendBuffer.position(end);
+        send(client.mAddress);
+    }
+
+    /**
+     * Sending content of the send buffer. Packets that don't fit in the socket buffer are dropped,
+     * same as if they were lost on the way
+     * @param address address to send to
+     */
+    private void send(final SocketAddress address) {
+        mSendBuffer.flip();
+        try {
+            final int sent = mChannel.send(mSendBuffer, address);
+            if (sent > 0) {
+                mBytesSent += sent;
+                mPacketsSent++;
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to send packet to " + address, e);
+        }
+    }
+
+    @Override
+    public int getDriveDirection(final long step, final int carIndex) {
+        return carIndex < mDriveInputs.length ? mDriveInputs[carIndex] : DRIVE_DIRECTION_NONE;
+    }
+
+    @Override
+    public int getTurnDirection(final long step, final int carIndex) {
+        return carIndex < mTurnInputs.length ? mTurnInputs[carIndex] : TURN_DIRECTION_NONE;
+    }
+
+    /**
+     * Returning port the server listens on, useful when it was created with port 0
+     * @return local port
+     */
+    public int getPort() {
+        return mChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returning number of ticks run so far
+     * @return tick count
+     */
+    public int getTick() {
+        return mTick;
+    }
+
+    /**
+     * Returning number of connected clients
+     * @return client count
+     */
+    public int getClientCount() {
+        return mClients.size;
+    }
+
+    /**
+     * Returning total number of bytes sent to all clients
+     * @return bytes sent
+     */
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /**
+     * Returning total number of packets sent to all clients
+     * @return packets sent
+     */
+    public long getPacketsSent() {
+        return mPacketsSent;
+    }
+
+    /**
+     * Returning simulation run by the server
+     * @return server simulation
+     */
+    public Simulation getSimulation() {
+        return mSimulation;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            // nothing to do, server is going away anyway
+        }
+        mSimulation.dispose();
+    }
+
+    /**
+     * State the server keeps for one client
+     */
+    private static class ClientConnection {
+
+        private final SocketAddress mAddress;
+        private final int mSlot;
+        private final SnapshotFrame[] mHistory = new SnapshotFrame[HISTORY_SIZE];
+        private final int[] mQueuedSequences = new int[INPUT_QUEUE_SIZE];
+        private final int[] mQueuedDrives = new int[INPUT_QUEUE_SIZE];
+        private final int[] mQueuedTurns = new int[INPUT_QUEUE_SIZE];
+        private int mSequence = NO_SEQUENCE;
+        private int mAckSequence = NO_SEQUENCE;
+        private int mInputSequence = NO_SEQUENCE;
+        private int mNewestInputSequence = NO_SEQUENCE;
+        private int mLastHeardTick;
+
+        /**
+         * Main ClientConnection constructor
+         * @param address address of the client
+         * @param slot slot of the client car
+         */
+        private ClientConnection(final SocketAddress address, final int slot) {
+            this.mAddress = address;
+            this.mSlot = slot;
+            for (int i = 0; i < HISTORY_SIZE; i++) {
+                mHistory[i] = new SnapshotFrame();
+            }
+            Arrays.fill(mQueuedSequences, NO_SEQUENCE);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Constants and value quantisation shared by {@link GameServer} and {@link NetworkClient}. Every
+ * packet starts with one type byte. Positions are sent as shorts in {@link #POSITION_SCALE} units
+ * per meter, and angles as shorts covering one full turn
+ */
+public class NetProtocol {
+
+    public static final int DEFAULT_PORT = 7777;
+    public static final int MAX_PACKET_SIZE = 1200;
+    public static final int NO_SEQUENCE = -1;
+
+    /** Client asking to join, sent until welcome is received */
+    public static final byte TYPE_JOIN = 1;
+    /** Server accepting the client: slot of the client car as int */
+    public static final byte TYPE_WELCOME = 2;
+    /** Client input: input sequence int, last received snapshot sequence int, drive byte, turn byte */
+    public static final byte TYPE_INPUT = 3;
+    /**
+     * Server state: snapshot sequence int, baseline sequence int, server tick int, last processed
+     * input sequence int, followed by delta written by {@link SnapshotFrame#writeDelta}
+     */
+    public static final byte TYPE_SNAPSHOT = 4;
+    /** Client leaving */
+    public static final byte TYPE_LEAVE = 5;
+
+    public static final float POSITION_SCALE = 100f;
+    private static final float ANGLE_SCALE = Short.MAX_VALUE / MathUtils.PI;
+
+    /**
+     * Main constructor set to private to disable object creation by the user
+     */
+    private NetProtocol() {
+    }
+
+    /**
+     * Turning position in to a short, clamped to the short range
+     * @param meters position in world units
+     * @return quantised position
+     */
+    public static short quantisePosition(final float meters) {
+        return (short) MathUtils.clamp(Math.round(meters * POSITION_SCALE), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * Turning quantised position back in to world units
+     * @param value quantised position
+     * @return position in world units
+     */
+    public static float dequantisePosition(final int value) {
+        return value / POSITION_SCALE;
+    }
+
+    /**
+     * Turning angle in to a short, after wrapping it to the range from -PI to PI
+     * @param radians angle in radians
+     * @return quantised angle
+     */
+    public static short quantiseAngle(final float radians) {
+        float angle = radians % MathUtils.PI2;
+        if (angle > MathUtils.PI) {
+            angle -= MathUtils.PI2;
+        } else if (angle < -MathUtils.PI) {
+            angle += MathUtils.PI2;
+        }
+        return (short) MathUtils.clamp(Math.round(angle * ANGLE_SCALE), -Short.MAX_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * Turning quantised angle back in to radians
+     * @param value quantised angle
+     * @return angle in radians, from -PI to PI
+     */
+    public static float dequantiseAngle(final int value) {
+        return value / ANGLE_SCALE;
+    }
+}
@@ -0,0 +1,217 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static com.topdowncar.game.network.NetProtocol.MAX_PACKET_SIZE;
+import static com.topdowncar.game.network.NetProtocol.NO_SEQUENCE;
+import static com.topdowncar.game.network.NetProtocol.TYPE_INPUT;
+import static com.topdowncar.game.network.NetProtocol.TYPE_JOIN;
+import static com.topdowncar.game.network.NetProtocol.TYPE_LEAVE;
+import static com.topdowncar.game.network.NetProtocol.TYPE_SNAPSHOT;
+import static com.topdowncar.game.network.NetProtocol.TYPE_WELCOME;
+
+/**
+ * Minimal client of {@link GameServer}. Joins the server, sends input and decodes snapshots, but
+ * doesn't simulate anything itself, so it can be used to test the server over loopback and as a
+ * base for a real game client. Uses non-blocking UDP, so {@link #update()} never waits
+ */
+public class NetworkClient implements Disposable {
+
+    private static final int HISTORY_SIZE = 32;
+    private static final int NO_SLOT = -1;
+
+    private final DatagramChannel mChannel;
+    private final ByteBuffer mReceiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final ByteBuffer mSendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final SnapshotFrame[] mHistory = new SnapshotFrame[HISTORY_SIZE];
+    private final SnapshotFrame mEmptyFrame = new SnapshotFrame();
+    private SnapshotFrame mLatestFrame = mEmptyFrame;
+    private int mSlot = NO_SLOT;
+    private int mInputSequence = NO_SEQUENCE;
+    private int mServerTick;
+    private int mLastProcessedInput = NO_SEQUENCE;
+    private long mBytesReceived;
+    private long mSnapshotsReceived;
+
+    /**
+     * Main NetworkClient constructor. Nothing is sent until the first {@link #update()}
+     * @param host server host name or address
+     * @param port server port
+     */
+    public NetworkClient(final String host, final int port) {
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            mHistory[i] = new SnapshotFrame();
+        }
+        try {
+            mChannel = DatagramChannel.open();
+            mChannel.configureBlocking(false);
+            mChannel.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to connect to " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * Handling all received packets, and asking to join if the server didn't accept the client yet
+     */
+    public void update() {
+        try {
+            while (mChannel.receive(mReceiveBuffer) != null) {
+                mReceiveBuffer.flip();
+                mBytesReceived += mReceiveBuffer.remaining();
+                try {
+                    handlePacket(mReceiveBuffer);
+                } catch (BufferUnderflowException e) {
+                    // truncated packet, nothing to do with it
+                }
+                mReceiveBuffer.clear();
+            }
+        } catch (IOException e) {
+            // server is not there yet or went away, join is sent again below
+        }
+        if (!isJoined()) {
+            mSendBuffer.clear();
+            mSendBuffer.put(TYPE_JOIN);
+            send();
+        }
+    }
+
+    /**
+     * Handling one received packet. Snapshots older than the latest one, or written against a
+     * baseline the client no longer has, are dropped
+     * @param in packet content
+     */
+    private void handlePacket(final ByteBuffer in) {
+        final byte type = in.get();
+        if (type == TYPE_WELCOME) {
+            mSlot = in.getInt();
+        } else if (type == TYPE_SNAPSHOT && isJoined()) {
+            final int sequence = in.getInt();
+            final int baselineSequence = in.getInt();
+            final int serverTick = in.getInt();
+            final int lastProcessedInput = in.getInt();
+            if (sequence <= mLatestFrame.getSequence()) {
+                return;
+            }
+            SnapshotFrame baseline = mEmptyFrame;
+            if (baselineSequence != NO_SEQUENCE) {
+                baseline = mHistory[baselineSequence % HISTORY_SIZE];
+                if (baseline.getSequence() != baselineSequence) {
+                    return;
+                }
+            }
+            final SnapshotFrame frame = mHistory[sequence % HISTORY_SIZE];
+            frame.readDelta(baseline, sequence, in);
+            mLatestFrame = frame;
+            mServerTick = serverTick;
+            mLastProcessedInput = lastProcessedInput;
+            mSnapshotsReceived++;
+        }
+    }
+
+    /**
+     * Sending input for the client car, together with confirmation of the latest snapshot
+     * @param driveDirection drive direction, one of Car.DRIVE_DIRECTION_ values
+     * @param turnDirection turn direction, one of Car.TURN_DIRECTION_ values
+     * @return sequence number of the sent input
+     */
+    public int sendInput(final int driveDirection, final int turnDirection) {
+        mInputSequence++;
+        mSendBuffer.clear();
+        mSendBuffer.put(TYPE_INPUT).putInt(mInputSequence).putInt(mLatestFrame.getSequence())
+                .put((byte) driveDirection).put((byte) turnDirection);
+        send();
+        return mInputSequence;
+    }
+
+    /**
+     * Sending content of the send buffer. Packets that can't be sent are dropped, same as if they
+     * were lost on the way
+     */
+    private void send() {
+        mSendBuffer.flip();
+        try {
+            mChannel.write(mSendBuffer);
+        } catch (IOException e) {
+            // server is not reachable right now, unreliable packets can be dropped
+        }
+    }
+
+    /**
+     * Checking if server accepted the client
+     * @return true if joined
+     */
+    public boolean isJoined() {
+        return mSlot != NO_SLOT;
+    }
+
+    /**
+     * Returning slot of the client car on the server
+     * @return car slot, or -1 if not joined yet
+     */
+    public int getSlot() {
+        return mSlot;
+    }
+
+    /**
+     * Returning the latest received snapshot. Frame is owned by the client and changes on
+     * {@link #update()}
+     * @return latest frame, empty if nothing was received yet
+     */
+    public SnapshotFrame getLatestFrame() {
+        return mLatestFrame;
+    }
+
+    /**
+     * Returning server tick of the latest snapshot
+     * @return server tick
+     */
+    public int getServerTick() {
+        return mServerTick;
+    }
+
+    /**
+     * Returning sequence of the last input the server applied before the latest snapshot
+     * @return input sequence, or {@link NetProtocol#NO_SEQUENCE} if none
+     */
+    public int getLastProcessedInput() {
+        return mLastProcessedInput;
+    }
+
+    /**
+     * Returning total number of bytes received from the server
+     * @return bytes received
+     */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Returning number of snapshots decoded so far
+     * @return snapshot count
+     */
+    public long getSnapshotsReceived() {
+        return mSnapshotsReceived;
+    }
+
+    @Override
+    public void dispose() {
+        if (isJoined()) {
+            mSendBuffer.clear();
+            mSendBuffer.put(TYPE_LEAVE);
+            send();
+        }
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            // nothing to do, client is going away anyway
+        }
+    }
+}
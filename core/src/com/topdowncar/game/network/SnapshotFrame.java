@@ -0,0 +1,305 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.nio.ByteBuffer;
+
+import static com.topdowncar.game.network.NetProtocol.NO_SEQUENCE;
+
+/**
+ * Quantised transforms of the cars one client knows about, indexed by car slot. Server keeps the
+ * frames it has sent to every client, and client keeps the frames it has received, so both sides
+ * can encode and decode a new frame as a delta against a frame the other side already has.
+ * Present slots are also kept in a list, so work depends on number of cars in the frame rather
+ * than on the highest slot
+ */
+public class SnapshotFrame {
+
+    private static final int FLAG_X = 1;
+    private static final int FLAG_Y = 2;
+    private static final int FLAG_ANGLE = 4;
+    private static final int FLAG_SMALL = 8;
+    private static final int FLAG_REMOVED = 16;
+    private static final int MAX_ENTRY_SIZE = 2 + 1 + 3 * 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int mSequence = NO_SEQUENCE;
+    private final IntArray mSlots = new IntArray();
+    private int[] mIndex = new int[INITIAL_CAPACITY];
+    private boolean[] mPresent = new boolean[INITIAL_CAPACITY];
+    private short[] mX = new short[INITIAL_CAPACITY];
+    private short[] mY = new short[INITIAL_CAPACITY];
+    private short[] mAngle = new short[INITIAL_CAPACITY];
+
+    /**
+     * Removing all cars and sequence number
+     */
+    public void clear() {
+        for (int i = 0; i < mSlots.size; i++) {
+            mPresent[mSlots.get(i)] = false;
+        }
+        mSlots.clear();
+        mSequence = NO_SEQUENCE;
+    }
+
+    /**
+     * Making this frame equal to the other one
+     * @param frame frame to copy
+     */
+    public void copyFrom(final SnapshotFrame frame) {
+        clear();
+        for (int i = 0; i < frame.mSlots.size; i++) {
+            final int slot = frame.mSlots.get(i);
+            set(slot, frame.mX[slot], frame.mY[slot], frame.mAngle[slot]);
+        }
+        mSequence = frame.mSequence;
+    }
+
+    /**
+     * Adding car or changing its transform
+     * @param slot car slot
+     * @param x quantised position x
+     * @param y quantised position y
+     * @param angle quantised angle
+     */
+    public void set(final int slot, final short x, final short y, final short angle) {
+        ensureCapacity(slot + 1);
+        if (!mPresent[slot]) {
+            mPresent[slot] = true;
+            mIndex[slot] = mSlots.size;
+            mSlots.add(slot);
+        }
+        mX[slot] = x;
+        mY[slot] = y;
+        mAngle[slot] = angle;
+    }
+
+    /**
+     * Removing car from the frame
+     * @param slot car slot
+     */
+    public void remove(final int slot) {
+        if (!isPresent(slot)) {
+            return;
+        }
+        mPresent[slot] = false;
+        // swap last slot in to the place of removed one, so the list stays packed
+        final int index = mIndex[slot];
+        final int lastSlot = mSlots.pop();
+        if (lastSlot != slot) {
+            mSlots.set(index, lastSlot);
+            mIndex[lastSlot] = index;
+        }
+    }
+
+    /**
+     * Writing entries that turn the baseline in to the target: cars that are new or changed, and
+     * cars that are gone. Changes that fit in a byte are written as byte differences. Writing stops
+     * when there is no more room in the buffer; cars left out are written in a later delta, since
+     * the receiver only gets what was written
+     * @param baseline frame the receiver already has
+     * @param target frame the receiver should have
+     * @param out buffer to write to
+     */
+    public static void writeDelta(final SnapshotFrame baseline, final SnapshotFrame target, final ByteBuffer out) {
+        final int countPosition = out.position();
+        out.putShort((short) 0);
+        int count = 0;
+
+        for (int i = 0; i < target.mSlots.size && out.remaining() >= MAX_ENTRY_SIZE; i++) {
+            final int slot = target.mSlots.get(i);
+            final boolean known = baseline.isPresent(slot);
+            final int dx = known ? target.mX[slot] - baseline.mX[slot] : target.mX[slot];
+            final int dy = known ? target.mY[slot] - baseline.mY[slot] : target.mY[slot];
+            final int dAngle = known ? (short) (target.mAngle[slot] - baseline.mAngle[slot]) : target.mAngle[slot];
+            int flags = (!known || dx != 0 ? FLAG_X : 0) | (!known || dy != 0 ? FLAG_Y : 0) | (!known || dAngle != 0 ? FLAG_ANGLE : 0);
+            if (flags == 0) {
+                continue;
+            }
+            final boolean small = known && isSmall(dx) && isSmall(dy) && isSmall(dAngle);
+            if (small) {
+                flags |= FLAG_SMALL;
+            }
+            out.putShort((short) slot).put((byte) flags);
+            writeValue(out, flags, FLAG_X, dx, small);
+            writeValue(out, flags, FLAG_Y, dy, small);
+            writeValue(out, flags, FLAG_ANGLE, dAngle, small);
+            count++;
+        }
+
+        for (int i = 0; i < baseline.mSlots.size && out.remaining() >= MAX_ENTRY_SIZE; i++) {
+            final int slot = baseline.mSlots.get(i);
+            if (!target.isPresent(slot)) {
+                out.putShort((short) slot).put((byte) FLAG_REMOVED);
+                count++;
+            }
+        }
+        out.putShort(countPosition, (short) count);
+    }
+
+    /**
+     * Reading delta written by {@link #writeDelta(SnapshotFrame, SnapshotFrame, ByteBuffer)} and
+     * setting this frame to the baseline with the delta applied
+     * @param baseline frame the delta was written against, can't be this frame
+     * @param sequence sequence number of the new frame
+     * @param in buffer to read from
+     */
+    public void readDelta(final SnapshotFrame baseline, final int sequence, final ByteBuffer in) {
+        copyFrom(baseline);
+        mSequence = sequence;
+        final int count = in.getShort();
+        for (int i = 0; i < count; i++) {
+            final int slot = in.getShort() & 0xFFFF;
+            final int flags = in.get();
+            if ((flags & FLAG_REMOVED) != 0) {
+                remove(slot);
+                continue;
+            }
+            final boolean small = (flags & FLAG_SMALL) != 0;
+            final boolean known = isPresent(slot);
+            final int x = readValue(in, flags, FLAG_X, small);
+            final int y = readValue(in, flags, FLAG_Y, small);
+            final int angle = readValue(in, flags, FLAG_ANGLE, small);
+            if (known) {
+                set(slot, (short) (mX[slot] + x), (short) (mY[slot] + y), (short) (mAngle[slot] + angle));
+            } else {
+                set(slot, (short) x, (short) y, (short) angle);
+            }
+        }
+    }
+
+    /**
+     * Writing one value if its flag is set
+     * @param out buffer to write to
+     * @param flags entry flags
+     * @param flag flag of the value
+     * @param value value or difference to write
+     * @param small write value as a byte
+     */
+    private static void writeValue(final ByteBuffer out, final int flags, final int flag, final int value, final boolean small) {
+        if ((flags & flag) == 0) {
+            return;
+        }
+        if (small) {
+            out.put((byte) value);
+        } else {
+            out.putShort((short) value);
+        }
+    }
+
+    /**
+     * Reading one value if its flag is set
+     * @param in buffer to read from
+     * @param flags entry flags
+     * @param flag flag of the value
+     * @param small value is written as a byte
+     * @return read value, or 0 if flag is not set
+     */
+    private static int readValue(final ByteBuffer in, final int flags, final int flag, final boolean small) {
+        if ((flags & flag) == 0) {
+            return 0;
+        }
+        return small ? in.get() : in.getShort();
+    }
+
+    /**
+     * Checking if difference fits in a byte
+     * @param value difference
+     * @return true if it fits
+     */
+    private static boolean isSmall(final int value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * Checking if car is in the frame
+     * @param slot car slot
+     * @return true if present
+     */
+    public boolean isPresent(final int slot) {
+        return slot < mPresent.length && mPresent[slot];
+    }
+
+    /**
+     * Returning slots of all cars in the frame. Array is owned by the frame and must not be modified
+     * @return present slots
+     */
+    public IntArray getSlots() {
+        return mSlots;
+    }
+
+    /**
+     * Returning quantised position x of the car
+     * @param slot car slot
+     * @return quantised x
+     */
+    public short getX(final int slot) {
+        return mX[slot];
+    }
+
+    /**
+     * Returning quantised position y of the car
+     * @param slot car slot
+     * @return quantised y
+     */
+    public short getY(final int slot) {
+        return mY[slot];
+    }
+
+    /**
+     * Returning quantised angle of the car
+     * @param slot car slot
+     * @return quantised angle
+     */
+    public short getAngle(final int slot) {
+        return mAngle[slot];
+    }
+
+    /**
+     * Returning sequence number of the frame
+     * @return sequence, or {@link NetProtocol#NO_SEQUENCE} for an empty frame
+     */
+    public int getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * Setting sequence number of the frame
+     * @param sequence sequence number
+     */
+    public void setSequence(final int sequence) {
+        this.mSequence = sequence;
+    }
+
+    /**
+     * Growing slot arrays to hold the given number of slots
+     * @param capacity required slot count
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= mPresent.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, mPresent.length * 2);
+        final boolean[] present = new boolean[newCapacity];
+        System.arraycopy(mPresent, 0, present, 0, mPresent.length);
+        mPresent = present;
+        final int[] index = new int[newCapacity];
+        System.arraycopy(mIndex, 0, index, 0, mIndex.length);
+        mIndex = index;
+        mX = grow(mX, newCapacity);
+        mY = grow(mY, newCapacity);
+        mAngle = grow(mAngle, newCapacity);
+    }
+
+    /**
+     * Copying short array to a bigger one
+     * @param array array to copy
+     * @param capacity new array size
+     * @return new array
+     */
+    private static short[] grow(final short[] array, final int capacity) {
+        final short[] newArray = new short[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -0,0 +1,138 @@
+package com.topdowncar.game.network;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.IntArray;
+
+import static com.topdowncar.game.Constants.STEP_TIME;
+
+/**
+ * Buffer of received snapshots used to show cars of other players. Cars are shown a few ticks in
+ * the past, interpolated between the two snapshots around that moment, so they move smoothly no
+ * matter how unevenly snapshots arrive, and they are never simulated on the client. Render clock
+ * runs a little faster or slower to stay {@link #DELAY_TICKS} behind the newest snapshot, and
+ * jumps if it is too far off, like after a long pause
+ */
+public class SnapshotInterpolator {
+
+    private static final int BUFFER_SIZE = 16;
+    private static final int DELAY_TICKS = 6;
+    private static final float MAX_DRIFT_TICKS = 30;
+    private static final float CLOCK_ADJUST = 0.05f;
+
+    private final SnapshotFrame[] mFrames = new SnapshotFrame[BUFFER_SIZE];
+    private final int[] mTicks = new int[BUFFER_SIZE];
+    private int mNewest = -1;
+    private int mCount;
+    private float mRenderTick = -1;
+    private int mFrom;
+    private int mTo;
+    private float mAlpha;
+
+    /**
+     * Main SnapshotInterpolator constructor
+     */
+    public SnapshotInterpolator() {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            mFrames[i] = new SnapshotFrame();
+        }
+    }
+
+    /**
+     * Adding received snapshot. Snapshots not newer than the newest one are ignored
+     * @param frame received frame, copied in to the buffer
+     * @param serverTick server tick of the snapshot
+     */
+    public void add(final SnapshotFrame frame, final int serverTick) {
+        if (mCount > 0 && serverTick <= mTicks[mNewest]) {
+            return;
+        }
+        mNewest = (mNewest + 1) % BUFFER_SIZE;
+        mFrames[mNewest].copyFrom(frame);
+        mTicks[mNewest] = serverTick;
+        mCount = Math.min(mCount + 1, BUFFER_SIZE);
+    }
+
+    /**
+     * Advancing render clock and finding the two snapshots around it
+     * @param delta time since the last advance in seconds
+     */
+    public void advance(final float delta) {
+        if (mCount == 0) {
+            return;
+        }
+        final float target = mTicks[mNewest] - DELAY_TICKS;
+        final float ticks = delta / STEP_TIME;
+        if (mRenderTick < 0 || Math.abs(target - mRenderTick) > MAX_DRIFT_TICKS) {
+            mRenderTick = target;
+        } else if (target - mRenderTick > 1) {
+            mRenderTick += ticks * (1 + CLOCK_ADJUST);
+        } else if (mRenderTick - target > 1) {
+            mRenderTick += ticks * (1 - CLOCK_ADJUST);
+        } else {
+            mRenderTick += ticks;
+        }
+
+        // walk from the newest snapshot back to the first one not after the render clock
+        mTo = mNewest;
+        mFrom = mNewest;
+        for (int i = 1; i < mCount && mTicks[mFrom] > mRenderTick; i++) {
+            mTo = mFrom;
+            mFrom = (mFrom - 1 + BUFFER_SIZE) % BUFFER_SIZE;
+        }
+        if (mFrom == mTo || mTicks[mFrom] > mRenderTick) {
+            mAlpha = 0;
+        } else {
+            mAlpha = MathUtils.clamp((mRenderTick - mTicks[mFrom]) / (mTicks[mTo] - mTicks[mFrom]), 0, 1);
+        }
+    }
+
+    /**
+     * Getting car transform at the render clock. Car that is only in one of the two snapshots is
+     * shown where that snapshot has it
+     * @param slot car slot on the server
+     * @param out vector to which position is written as x and y, and angle in radians as z
+     * @return true if car is known at the render clock
+     */
+    public boolean getTransform(final int slot, final Vector3 out) {
+        if (mCount == 0) {
+            return false;
+        }
+        final SnapshotFrame from = mFrames[mFrom];
+        final SnapshotFrame to = mFrames[mTo];
+        final boolean inFrom = from.isPresent(slot);
+        final boolean inTo = to.isPresent(slot);
+        if (inFrom && inTo) {
+            final float fromAngle = NetProtocol.dequantiseAngle(from.getAngle(slot));
+            final float angleChange = NetProtocol.dequantiseAngle((short) (to.getAngle(slot) - from.getAngle(slot)));
+            out.set(MathUtils.lerp(NetProtocol.dequantisePosition(from.getX(slot)), NetProtocol.dequantisePosition(to.getX(slot)), mAlpha),
+                    MathUtils.lerp(NetProtocol.dequantisePosition(from.getY(slot)), NetProtocol.dequantisePosition(to.getY(slot)), mAlpha),
+                    fromAngle + angleChange * mAlpha);
+            return true;
+        }
+        if (!inFrom && !inTo) {
+            return false;
+        }
+        final SnapshotFrame frame = inFrom ? from : to;
+        out.set(NetProtocol.dequantisePosition(frame.getX(slot)), NetProtocol.dequantisePosition(frame.getY(slot)),
+                NetProtocol.dequantiseAngle(frame.getAngle(slot)));
+        return true;
+    }
+
+    /**
+     * Returning slots of cars in the newer of the two snapshots around the render clock. Array is
+     * owned by the interpolator and must not be modified
+     * @return car slots to show
+     */
+    public IntArray getSlots() {
+        return mFrames[mTo].getSlots();
+    }
+
+    /**
+     * Returning how many ticks the render clock is behind the newest snapshot
+     * @return render delay in ticks
+     */
+    public float getDelayTicks() {
+        return mCount == 0 ? 0 : mTicks[mNewest] - mRenderTick;
+    }
+}
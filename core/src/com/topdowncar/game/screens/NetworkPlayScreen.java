@@ -0,0 +1,162 @@
+package com.topdowncar.game.screens;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.viewport.FitViewport;
+import com.badlogic.gdx.utils.viewport.Viewport;
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.network.ClientGame;
+import com.topdowncar.game.tools.WorldRenderer;
+
+import static com.topdowncar.game.Constants.DEFAULT_ZOOM;
+import static com.topdowncar.game.Constants.MAP_NAME;
+import static com.topdowncar.game.Constants.MAX_STEPS;
+import static com.topdowncar.game.Constants.PPM;
+import static com.topdowncar.game.Constants.RESOLUTION;
+import static com.topdowncar.game.Constants.STEP_TIME;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_BACKWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_FORWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_LEFT;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_RIGHT;
+
+/**
+ * Screen for playing on a {@link com.topdowncar.game.network.GameServer}. Local car is predicted
+ * by {@link ClientGame} and drawn from its own body, and other cars are drawn from interpolated
+ * snapshots
+ */
+public class NetworkPlayScreen implements Screen {
+
+    private static final float CAMERA_ZOOM = 0.3f;
+    private final SpriteBatch mBatch;
+    private final OrthographicCamera mCamera;
+    private final Viewport mViewport;
+    private final ClientGame mGame;
+    private final TiledMap mMap;
+    private final WorldRenderer mRenderer;
+    private final Vector2 mCameraTarget = new Vector2();
+    private float mAccumulator;
+    private int mDriveDirection;
+    private int mTurnDirection;
+
+    /**
+     * Main NetworkPlayScreen constructor
+     * @param host server host name or address
+     * @param port server port
+     */
+    public NetworkPlayScreen(final String host, final int port) {
+        mBatch = new SpriteBatch();
+        mCamera = new OrthographicCamera();
+        mCamera.zoom = DEFAULT_ZOOM;
+        mViewport = new FitViewport(RESOLUTION.x / PPM, RESOLUTION.y / PPM, mCamera);
+        mGame = new ClientGame(host, port);
+        // Tiled map is only needed to draw tile layers, walls are drawn from map data
+        mMap = mGame.getSimulation().getMapLoader().getMapData().hasTileLayers() ? new TmxMapLoader().load(MAP_NAME) : null;
+        mRenderer = new WorldRenderer(mBatch, mMap, mGame.getSimulation().getMapLoader());
+    }
+
+    @Override
+    public void show() {
+
+    }
+
+    @Override
+    public void render(float delta) {
+        Gdx.gl.glClearColor(0, 0, 0, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        handleInput();
+        update(delta);
+        mRenderer.render(mCamera, mGame.getSimulation().getVehicles(), mAccumulator / STEP_TIME);
+        if (mGame.hasLocalCar()) {
+            mRenderer.renderRemoteCars(mGame.getInterpolator(), mGame.getServerSlot(), mGame.getLocalCar());
+        }
+    }
+
+    /**
+     * Handling user input, which is sent to the server on the next client step. Also handling
+     * escape to quit the game and camera zoom
+     */
+    private void handleInput() {
+        if (Gdx.input.isKeyPressed(Input.Keys.UP)) {
+            mDriveDirection = DRIVE_DIRECTION_FORWARD;
+        } else if (Gdx.input.isKeyPressed(Input.Keys.DOWN)) {
+            mDriveDirection = DRIVE_DIRECTION_BACKWARD;
+        } else {
+            mDriveDirection = DRIVE_DIRECTION_NONE;
+        }
+
+        if (Gdx.input.isKeyPressed(Input.Keys.LEFT)) {
+            mTurnDirection = TURN_DIRECTION_LEFT;
+        } else if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) {
+            mTurnDirection = TURN_DIRECTION_RIGHT;
+        } else {
+            mTurnDirection = TURN_DIRECTION_NONE;
+        }
+
+        if (Gdx.input.isKeyPressed(Input.Keys.ESCAPE)) {
+            Gdx.app.exit();
+        }
+
+        if (Gdx.input.isKeyPressed(Input.Keys.Q)) {
+            mCamera.zoom -= CAMERA_ZOOM;
+        } else if (Gdx.input.isKeyPressed(Input.Keys.E)) {
+            mCamera.zoom += CAMERA_ZOOM;
+        }
+    }
+
+    /**
+     * Running client steps with the same fixed step as the server, and moving camera to the local
+     * car interpolated between the last two steps
+     * @param delta delta time received from {@link NetworkPlayScreen#render(float)} method
+     */
+    private void update(final float delta) {
+        mAccumulator = Math.min(mAccumulator + delta, STEP_TIME * MAX_STEPS);
+        while (mAccumulator >= STEP_TIME) {
+            mGame.tick(mDriveDirection, mTurnDirection);
+            mAccumulator -= STEP_TIME;
+        }
+        if (mGame.hasLocalCar()) {
+            final Car car = mGame.getLocalCar();
+            mCamera.position.set(car.getInterpolatedPosition(mAccumulator / STEP_TIME, mCameraTarget), 0);
+        }
+        mCamera.update();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        mViewport.update(width, height);
+    }
+
+    @Override
+    public void pause() {
+
+    }
+
+    @Override
+    public void resume() {
+
+    }
+
+    @Override
+    public void hide() {
+
+    }
+
+    @Override
+    public void dispose() {
+        mBatch.dispose();
+        mGame.dispose();
+        mRenderer.dispose();
+        if (mMap != null) {
+            mMap.dispose();
+        }
+    }
+}
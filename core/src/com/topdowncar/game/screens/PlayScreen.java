@@ -5,19 +5,39 @@ import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
-import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.ai.AiController;
+import com.topdowncar.game.ai.RacingLine;
+import com.topdowncar.game.entities.CarSpecCache;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.tools.FrameProfiler;
+import com.topdowncar.game.tools.MapCache;
 import com.topdowncar.game.tools.MapLoader;
+import com.topdowncar.game.tools.SolverBudget;
+import com.topdowncar.game.tools.WorldRenderer;
+import com.topdowncar.game.tools.WorldStepper;
 
+import static com.topdowncar.game.Constants.CHEAP_POSITION_ITERATION;
+import static com.topdowncar.game.Constants.CHEAP_VELOCITY_ITERATION;
+import static com.topdowncar.game.Constants.DEFAULT_CAR;
 import static com.topdowncar.game.Constants.DEFAULT_ZOOM;
 import static com.topdowncar.game.Constants.GRAVITY;
+import static com.topdowncar.game.Constants.MAP_NAME;
+import static com.topdowncar.game.Constants.MAX_STEPS;
 import static com.topdowncar.game.Constants.POSITION_ITERATION;
 import static com.topdowncar.game.Constants.PPM;
 import static com.topdowncar.game.Constants.RESOLUTION;
+import static com.topdowncar.game.Constants.STEP_TIME;
 import static com.topdowncar.game.Constants.VELOCITY_ITERATION;
 import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_BACKWARD;
 import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_FORWARD;
@@ -26,16 +46,37 @@ import static com.topdowncar.game.entities.Car.TURN_DIRECTION_LEFT;
 import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
 import static com.topdowncar.game.entities.Car.TURN_DIRECTION_RIGHT;
 
-public class PlayScreen implements Screen {
+public class PlayScreen implements Screen, WorldStepper.StepListener {
 
     private static final float CAMERA_ZOOM = 0.3f;
+    private static final float PROFILER_INTERVAL = 1.0f;
+    private static final String PROFILER_LOG = "profile.csv";
+    private static final float OVERLAY_MARGIN = 10;
+    private static final float STEP_BUDGET_MICROS = 4000;
+    private static final int AI_BATCH = 10;
+    private static final float AI_SPACING = 7;
     private final SpriteBatch mBatch;
     private final World mWorld;
     private final Box2DDebugRenderer mB2dr;
     private final OrthographicCamera mCamera;
     private final Viewport mViewport;
-    private final Car mPlayer;
+    private final VehicleManager mVehicles;
+    private final int mPlayerSlot;
     private final MapLoader mMapLoader;
+    private final WorldStepper mStepper;
+    private final AiController mAi;
+    private final RacingLine mRacingLine;
+    private final int mStartPoint;
+    private int mAiCount;
+    private final Vector2 mSpawnPosition = new Vector2();
+    private final Vector2 mCameraTarget = new Vector2();
+    private final FrameProfiler mProfiler;
+    private final BitmapFont mFont;
+    private final Matrix4 mOverlayMatrix = new Matrix4();
+    private boolean mShowProfiler;
+    private final TiledMap mMap;
+    private final WorldRenderer mRenderer;
+    private boolean mDebugDraw;
 
     /**
      * Base constructor for PlayScreen
@@ -47,8 +88,20 @@ public class PlayScreen implements Screen {
         mCamera = new OrthographicCamera();
         mCamera.zoom = DEFAULT_ZOOM;
         mViewport = new FitViewport(RESOLUTION.x / PPM, RESOLUTION.y / PPM, mCamera);
-        mMapLoader = new MapLoader(mWorld);
-        mPlayer = new Car(35.0f, 0.8f, 80, mMapLoader, Car.DRIVE_2WD, mWorld);
+        mMapLoader = new MapLoader(mWorld, MapCache.get(MAP_NAME), false, true);
+        mVehicles = new VehicleManager(mWorld, mMapLoader, CarSpecCache.get(DEFAULT_CAR));
+        mPlayerSlot = mVehicles.addCar(0, 0);
+        mRacingLine = RacingLine.get(mMapLoader.getMapData());
+        mMapLoader.getPlayerPosition(mSpawnPosition);
+        mStartPoint = mRacingLine.findNearest(mSpawnPosition.x / PPM, mSpawnPosition.y / PPM, -1, 0);
+        mAi = new AiController(mWorld, mVehicles, mRacingLine);
+        mStepper = new WorldStepper(mWorld, STEP_TIME, MAX_STEPS, this);
+        mProfiler = new FrameProfiler(PROFILER_INTERVAL);
+        mStepper.setProfiler(mProfiler);
+        mFont = new BitmapFont();
+        // Tiled map is only needed to draw tile layers, walls are drawn from map data
+        mMap = mMapLoader.getMapData().hasTileLayers() ? new TmxMapLoader().load(MAP_NAME) : null;
+        mRenderer = new WorldRenderer(mBatch, mMap, mMapLoader);
     }
 
     @Override
@@ -60,32 +113,47 @@ public class PlayScreen implements Screen {
     public void render(float delta) {
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        mProfiler.beginFrame();
+        mProfiler.begin(FrameProfiler.PHASE_INPUT);
         handleInput();
+        mProfiler.end(FrameProfiler.PHASE_INPUT);
         update(delta);
+        mProfiler.begin(FrameProfiler.PHASE_DRAW);
         draw();
+        mProfiler.end(FrameProfiler.PHASE_DRAW);
+        mProfiler.endFrame(mWorld, delta);
+        if (mShowProfiler) {
+            drawProfiler();
+        }
 
     }
 
     /**
-     * Handling user input and using {@link Car} class to assign direction values
-     * Also handling other input, such as escape to quit the game and camera zoom
+     * Handling user input and writing direction values to the player slot of {@link VehicleManager}
+     * Also handling other input, such as escape to quit the game, camera zoom, F2 to show physics
+     * debug lines, F3 to show frame statistics, F4 to start or stop writing them to
+     * {@link #PROFILER_LOG}, F5 to switch between fixed and adaptive solver iterations and F6 to
+     * add {@link #AI_BATCH} AI opponents
      */
     private void handleInput() {
+        final int driveDirection;
         if (Gdx.input.isKeyPressed(Input.Keys.UP)) {
-            mPlayer.setDriveDirection(DRIVE_DIRECTION_FORWARD);
+            driveDirection = DRIVE_DIRECTION_FORWARD;
         } else if (Gdx.input.isKeyPressed(Input.Keys.DOWN)) {
-            mPlayer.setDriveDirection(DRIVE_DIRECTION_BACKWARD);
+            driveDirection = DRIVE_DIRECTION_BACKWARD;
         } else {
-            mPlayer.setDriveDirection(DRIVE_DIRECTION_NONE);
+            driveDirection = DRIVE_DIRECTION_NONE;
         }
 
+        final int turnDirection;
         if (Gdx.input.isKeyPressed(Input.Keys.LEFT)) {
-            mPlayer.setTurnDirection(TURN_DIRECTION_LEFT);
+            turnDirection = TURN_DIRECTION_LEFT;
         } else if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)) {
-            mPlayer.setTurnDirection(TURN_DIRECTION_RIGHT);
+            turnDirection = TURN_DIRECTION_RIGHT;
         } else {
-            mPlayer.setTurnDirection(TURN_DIRECTION_NONE);
+            turnDirection = TURN_DIRECTION_NONE;
         }
+        mVehicles.setInput(mPlayerSlot, driveDirection, turnDirection);
 
         if (Gdx.input.isKeyPressed(Input.Keys.ESCAPE)) {
             Gdx.app.exit();
@@ -96,25 +164,87 @@ public class PlayScreen implements Screen {
         } else if (Gdx.input.isKeyPressed(Input.Keys.E)) {
             mCamera.zoom += CAMERA_ZOOM;
         }
+
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F2)) {
+            mDebugDraw = !mDebugDraw;
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+            mShowProfiler = !mShowProfiler;
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F4)) {
+            mProfiler.setLogFile(mProfiler.isLogging() ? null : Gdx.files.local(PROFILER_LOG), FrameProfiler.FORMAT_CSV);
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F5)) {
+            mStepper.setSolverBudget(mStepper.getSolverBudget() != null ? null : new SolverBudget(STEP_BUDGET_MICROS,
+                    CHEAP_VELOCITY_ITERATION, VELOCITY_ITERATION, CHEAP_POSITION_ITERATION, POSITION_ITERATION));
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F6)) {
+            addOpponents();
+        }
     }
 
     /**
-     * Used only for graphic to draw stuff
+     * Adding up to {@link #AI_BATCH} AI driven cars on the racing line behind the spawn point, one
+     * after another and facing along the line, which always keeps them clear of walls. Once the
+     * whole line back to the spawn point is taken, no more cars are added
+     */
+    private void addOpponents() {
+        final int pointsPerCar = MathUtils.ceil(AI_SPACING / mRacingLine.getSpacing());
+        for (int i = 0; i < AI_BATCH; i++) {
+            final int back = (mAiCount + 1) * pointsPerCar;
+            if (back > mRacingLine.getPointCount() - pointsPerCar) {
+                Gdx.app.log("PlayScreen", "Racing line is full, " + mAiCount + " opponents added");
+                return;
+            }
+            final int point = mStartPoint - back;
+            final float x = mRacingLine.getX(point);
+            final float y = mRacingLine.getY(point);
+            mMapLoader.getPlayerPosition(mSpawnPosition);
+            final int slot = mVehicles.addCar(x * PPM - mSpawnPosition.x, y * PPM - mSpawnPosition.y);
+            mVehicles.getCar(slot).reset(x, y, mRacingLine.getDirection(point) - MathUtils.PI / 2);
+            mAi.addDriver(slot);
+            mAiCount++;
+        }
+    }
+
+    /**
+     * Used only for graphic to draw stuff. Physics debug lines are drawn on top only when enabled,
+     * since {@link Box2DDebugRenderer} walks every fixture and joint every frame
      */
     private void draw() {
-        mBatch.setProjectionMatrix(mCamera.combined);
-        mB2dr.render(mWorld, mCamera.combined);
+        mRenderer.render(mCamera, mVehicles, mStepper.getAlpha());
+        if (mDebugDraw) {
+            mB2dr.render(mWorld, mCamera.combined);
+        }
+    }
+
+    /**
+     * Drawing frame statistics of the last profiler interval in the top left corner of the screen
+     */
+    private void drawProfiler() {
+        mOverlayMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        mBatch.setProjectionMatrix(mOverlayMatrix);
+        mBatch.begin();
+        mFont.draw(mBatch, mProfiler.getSummary(), OVERLAY_MARGIN, Gdx.graphics.getHeight() - OVERLAY_MARGIN);
+        mBatch.end();
     }
 
     /**
-     * Main update method used for logic
+     * Main update method used for logic. Physics is advanced in fixed steps by {@link WorldStepper},
+     * and camera follows player position interpolated between the last two steps
      * @param delta delta time received from {@link PlayScreen#render(float)} method
      */
     private void update(final float delta) {
-        mPlayer.update(delta);
-        mCamera.position.set(mPlayer.getBody().getPosition(), 0);
+        mStepper.update(delta);
+        mCamera.position.set(mVehicles.getCar(mPlayerSlot).getInterpolatedPosition(mStepper.getAlpha(), mCameraTarget), 0);
         mCamera.update();
-        mWorld.step(delta, VELOCITY_ITERATION, POSITION_ITERATION);
+    }
+
+    @Override
+    public void onStep(final float stepTime) {
+        mMapLoader.streamWalls(mVehicles);
+        mAi.update();
+        mVehicles.update(stepTime);
     }
 
     @Override
@@ -140,8 +270,14 @@ public class PlayScreen implements Screen {
     @Override
     public void dispose() {
         mBatch.dispose();
+        mVehicles.dispose();
         mWorld.dispose();
         mB2dr.dispose();
         mMapLoader.dispose();
+        mFont.dispose();
+        mRenderer.dispose();
+        if (mMap != null) {
+            mMap.dispose();
+        }
     }
 }
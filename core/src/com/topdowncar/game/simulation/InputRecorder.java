@@ -0,0 +1,103 @@
+package com.topdowncar.game.simulation;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.topdowncar.game.entities.VehicleManager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+
+/**
+ * Writing input of every car on every step in to a compact binary stream, which can be played
+ * back with {@link InputReplay}. Stream starts with a header (magic, version, car count) and is
+ * followed by one record per step: step delta as float, then one byte per car slot with drive
+ * direction in the lower two bits and turn direction in the next two. Slots without a car, such
+ * as slots of removed cars, are recorded with no input
+ */
+public class InputRecorder {
+
+    public static final int MAGIC = 0x54444349; // "TDCI"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+
+    static final int DIRECTION_BITS = 2;
+    static final int DIRECTION_MASK = (1 << DIRECTION_BITS) - 1;
+
+    private final DataOutputStream mOutput;
+    private final int mCarCount;
+    private long mStepCount;
+
+    /**
+     * Main InputRecorder constructor, writing the header straight away
+     * @param output stream to write to, closed by {@link #close()}
+     * @param carCount number of car slots recorded on each step, slots 0 to carCount - 1
+     */
+    public InputRecorder(final OutputStream output, final int carCount) {
+        this.mOutput = new DataOutputStream(new BufferedOutputStream(output));
+        this.mCarCount = carCount;
+        try {
+            mOutput.writeInt(MAGIC);
+            mOutput.writeInt(VERSION);
+            mOutput.writeInt(carCount);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not write recording header", e);
+        }
+    }
+
+    /**
+     * Recording one step
+     * @param delta delta time of the step
+     * @param vehicles {@link VehicleManager} holding the input of every car
+     */
+    public void record(final float delta, final VehicleManager vehicles) {
+        try {
+            mOutput.writeFloat(delta);
+            for (int slot = 0; slot < mCarCount; slot++) {
+                if (vehicles.hasCar(slot)) {
+                    mOutput.writeByte(pack(vehicles.getDriveInput(slot), vehicles.getTurnInput(slot)));
+                } else {
+                    mOutput.writeByte(pack(DRIVE_DIRECTION_NONE, TURN_DIRECTION_NONE));
+                }
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not write recorded step " + mStepCount, e);
+        }
+        mStepCount++;
+    }
+
+    /**
+     * Packing drive and turn direction in to one byte
+     * @param driveDirection one of Car.DRIVE_DIRECTION_ values
+     * @param turnDirection one of Car.TURN_DIRECTION_ values
+     * @return packed input
+     */
+    private static int pack(final int driveDirection, final int turnDirection) {
+        if ((driveDirection & ~DIRECTION_MASK) != 0 || (turnDirection & ~DIRECTION_MASK) != 0) {
+            throw new IllegalArgumentException("Direction does not fit in " + DIRECTION_BITS + " bits: " + driveDirection + ", " + turnDirection);
+        }
+        return driveDirection | turnDirection << DIRECTION_BITS;
+    }
+
+    /**
+     * Returning number of steps recorded so far
+     * @return step count
+     */
+    public long getStepCount() {
+        return mStepCount;
+    }
+
+    /**
+     * Flushing and closing the underlying stream
+     */
+    public void close() {
+        try {
+            mOutput.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not close recording", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.topdowncar.game.simulation;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static com.topdowncar.game.simulation.InputRecorder.DIRECTION_BITS;
+import static com.topdowncar.game.simulation.InputRecorder.DIRECTION_MASK;
+
+/**
+ * Recording written by {@link InputRecorder}, loaded in to memory and played back as an
+ * {@link InputScript}. With the same car count and step deltas, simulation goes through exactly
+ * the same states as when it was recorded
+ */
+public class InputReplay implements InputScript {
+
+    private final int mCarCount;
+    private final int mStepCount;
+    private final float[] mDeltas;
+    private final byte[] mInputs;
+
+    /**
+     * Main InputReplay constructor, reading the whole stream
+     * @param input stream to read from, closed after reading
+     */
+    public InputReplay(final InputStream input) {
+        final ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(StreamUtils.copyStreamToByteArray(input));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not read recording", e);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+
+        if (buffer.remaining() < InputRecorder.HEADER_SIZE || buffer.getInt() != InputRecorder.MAGIC) {
+            throw new GdxRuntimeException("Not an input recording");
+        }
+        final int version = buffer.getInt();
+        if (version != InputRecorder.VERSION) {
+            throw new GdxRuntimeException("Unsupported recording version " + version);
+        }
+        mCarCount = buffer.getInt();
+
+        final int stepSize = 4 + mCarCount;
+        mStepCount = buffer.remaining() / stepSize;
+        mDeltas = new float[mStepCount];
+        mInputs = new byte[mStepCount * mCarCount];
+        for (int i = 0; i < mStepCount; i++) {
+            mDeltas[i] = buffer.getFloat();
+            buffer.get(mInputs, i * mCarCount, mCarCount);
+        }
+    }
+
+    /**
+     * Playing the whole recording on the simulation, using recorded delta for every step
+     * @param simulation simulation with {@link #getCarCount()} cars, created with this replay as
+     *                   its {@link InputScript}
+     * @param stepNanos array with at least {@link #getStepCount()} elements which receives time
+     *                  taken by every step in nanoseconds, or null if steps don't need timing
+     */
+    public void play(final Simulation simulation, final long[] stepNanos) {
+        if (simulation.getVehicles().getCarCount() != mCarCount) {
+            throw new IllegalArgumentException("Recording has " + mCarCount + " cars, simulation has " + simulation.getVehicles().getCarCount());
+        }
+        if (stepNanos != null && stepNanos.length < mStepCount) {
+            throw new IllegalArgumentException("Timing array has " + stepNanos.length + " elements, recording has " + mStepCount + " steps");
+        }
+        for (int i = 0; i < mStepCount; i++) {
+            final long start = stepNanos != null ? System.nanoTime() : 0;
+            simulation.step(mDeltas[i]);
+            if (stepNanos != null) {
+                stepNanos[i] = System.nanoTime() - start;
+            }
+        }
+    }
+
+    @Override
+    public int getDriveDirection(final long step, final int carIndex) {
+        return getInput(step, carIndex) & DIRECTION_MASK;
+    }
+
+    @Override
+    public int getTurnDirection(final long step, final int carIndex) {
+        return getInput(step, carIndex) >> DIRECTION_BITS & DIRECTION_MASK;
+    }
+
+    /**
+     * Getting packed input of the car on the given step
+     * @param step step number
+     * @param carIndex car slot
+     * @return packed input
+     */
+    private int getInput(final long step, final int carIndex) {
+        if (step >= mStepCount || carIndex >= mCarCount) {
+            throw new IllegalArgumentException("No recorded input for car " + carIndex + " on step " + step);
+        }
+        return mInputs[(int) step * mCarCount + carIndex];
+    }
+
+    /**
+     * Returning delta of the recorded step
+     * @param step step number
+     * @return step delta
+     */
+    public float getDelta(final int step) {
+        return mDeltas[step];
+    }
+
+    /**
+     * Returning number of recorded steps
+     * @return step count
+     */
+    public int getStepCount() {
+        return mStepCount;
+    }
+
+    /**
+     * Returning number of recorded cars
+     * @return car count
+     */
+    public int getCarCount() {
+        return mCarCount;
+    }
+}
@@ -0,0 +1,20 @@
+package com.topdowncar.game.simulation;
+
+public interface InputScript {
+
+    /**
+     * Returning scripted drive direction for the car
+     * @param step number of the step that is about to be simulated
+     * @param carIndex slot of the car in the {@link Simulation} vehicle manager
+     * @return one of Car.DRIVE_DIRECTION_ values
+     */
+    int getDriveDirection(long step, int carIndex);
+
+    /**
+     * Returning scripted turn direction for the car
+     * @param step number of the step that is about to be simulated
+     * @param carIndex slot of the car in the {@link Simulation} vehicle manager
+     * @return one of Car.TURN_DIRECTION_ values
+     */
+    int getTurnDirection(long step, int carIndex);
+}
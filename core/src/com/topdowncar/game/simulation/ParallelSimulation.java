@@ -0,0 +1,194 @@
+package com.topdowncar.game.simulation;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Many independent {@link Simulation} instances, each with its own world, map and cars, stepped
+ * in parallel on a fixed set of worker threads. Every world always belongs to the same worker.
+ * {@link #tick()} releases all workers, waits until every world has done one step and returns,
+ * so all worlds advance together
+ */
+public class ParallelSimulation implements Disposable {
+
+    private final Array<Simulation> mSimulations = new Array<Simulation>();
+    private final long[] mLastStepNanos;
+    private final long[] mTotalStepNanos;
+    private final Thread[] mWorkers;
+    private final CyclicBarrier mStartBarrier;
+    private final CyclicBarrier mEndBarrier;
+    private volatile boolean mRunning = true;
+    private volatile Throwable mWorkerError;
+    private long mTicks;
+
+    /**
+     * Main ParallelSimulation constructor. Worlds are created on the calling thread, since map
+     * loading uses {@link com.badlogic.gdx.Gdx#files}
+     * @param worldCount number of independent worlds
+     * @param carCount number of cars in every world
+     * @param script {@link InputScript} used to drive the cars in all worlds
+     * @param threadCount number of worker threads
+     */
+    public ParallelSimulation(final int worldCount, final int carCount, final InputScript script, final int threadCount) {
+        this(worldCount, carCount, script, threadCount, false);
+    }
+
+    /**
+     * ParallelSimulation constructor which can keep only walls around cars in every world
+     * @param worldCount number of independent worlds
+     * @param carCount number of cars in every world
+     * @param script {@link InputScript} used to drive the cars in all worlds
+     * @param threadCount number of worker threads
+     * @param streamWalls true to stream walls around cars, false to create all walls up front
+     */
+    public ParallelSimulation(final int worldCount, final int carCount, final InputScript script, final int threadCount,
+                              final boolean streamWalls) {
+        if (worldCount < 1 || threadCount < 1) {
+            throw new IllegalArgumentException("World and thread count must be at least 1, got " + worldCount + " and " + threadCount);
+        }
+        for (int i = 0; i < worldCount; i++) {
+            mSimulations.add(new Simulation(carCount, script, streamWalls));
+        }
+        mLastStepNanos = new long[worldCount];
+        mTotalStepNanos = new long[worldCount];
+
+        final int workerCount = Math.min(threadCount, worldCount);
+        mStartBarrier = new CyclicBarrier(workerCount + 1);
+        mEndBarrier = new CyclicBarrier(workerCount + 1);
+        mWorkers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            mWorkers[i] = new Thread(new Worker(i, workerCount), "SimulationWorker-" + i);
+            mWorkers[i].setDaemon(true);
+            mWorkers[i].start();
+        }
+    }
+
+    /**
+     * Stepping every world once, in parallel. Returns when all worlds are done
+     */
+    public void tick() {
+        await(mStartBarrier);
+        await(mEndBarrier);
+        if (mWorkerError != null) {
+            throw new GdxRuntimeException("Simulation worker failed", mWorkerError);
+        }
+        mTicks++;
+    }
+
+    /**
+     * Doing given number of ticks as fast as possible
+     * @param ticks number of ticks
+     */
+    public void run(final long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            tick();
+        }
+    }
+
+    /**
+     * Returning time the last step of the world took
+     * @param world world index
+     * @return step time in nanoseconds
+     */
+    public long getLastStepNanos(final int world) {
+        return mLastStepNanos[world];
+    }
+
+    /**
+     * Returning average step time of the world since the start
+     * @param world world index
+     * @return average step time in nanoseconds
+     */
+    public long getAverageStepNanos(final int world) {
+        return mTicks == 0 ? 0 : mTotalStepNanos[world] / mTicks;
+    }
+
+    /**
+     * Returning all simulations. They must not be changed while {@link #tick()} is running
+     * @return array of simulations
+     */
+    public Array<Simulation> getSimulations() {
+        return mSimulations;
+    }
+
+    /**
+     * Returning number of worker threads
+     * @return worker count
+     */
+    public int getWorkerCount() {
+        return mWorkers.length;
+    }
+
+    @Override
+    public void dispose() {
+        mRunning = false;
+        for (final Thread worker : mWorkers) {
+            worker.interrupt();
+        }
+        for (final Thread worker : mWorkers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < mSimulations.size; i++) {
+            mSimulations.get(i).dispose();
+        }
+    }
+
+    /**
+     * Waiting on the barrier, turning checked exceptions in to runtime ones
+     * @param barrier barrier to wait on
+     */
+    private static void await(final CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while waiting for simulation workers", e);
+        } catch (BrokenBarrierException e) {
+            throw new GdxRuntimeException("Simulation workers stopped", e);
+        }
+    }
+
+    /**
+     * Worker stepping every n-th world, starting from its own index
+     */
+    private class Worker implements Runnable {
+
+        private final int mFirstWorld;
+        private final int mWorldStride;
+
+        Worker(final int firstWorld, final int worldStride) {
+            this.mFirstWorld = firstWorld;
+            this.mWorldStride = worldStride;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (mRunning) {
+                    await(mStartBarrier);
+                    try {
+                        for (int i = mFirstWorld; i < mSimulations.size; i += mWorldStride) {
+                            final long start = System.nanoTime();
+                            mSimulations.get(i).step();
+                            mLastStepNanos[i] = System.nanoTime() - start;
+                            mTotalStepNanos[i] += mLastStepNanos[i];
+                        }
+                    } catch (Throwable t) {
+                        mWorkerError = t;
+                    }
+                    await(mEndBarrier);
+                }
+            } catch (GdxRuntimeException e) {
+                // barrier was broken or worker interrupted, which happens on dispose
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.topdowncar.game.simulation;
+
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.ai.AiController;
+import com.topdowncar.game.entities.CarSpecCache;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.entities.VehicleSnapshot;
+import com.topdowncar.game.tools.ContactEventBuffer;
+import com.topdowncar.game.tools.MapCache;
+import com.topdowncar.game.tools.MapData;
+import com.topdowncar.game.tools.MapLoader;
+import com.topdowncar.game.tools.WorldStepper;
+
+import static com.topdowncar.game.Constants.DEFAULT_CAR;
+import static com.topdowncar.game.Constants.GRAVITY;
+import static com.topdowncar.game.Constants.MAP_NAME;
+import static com.topdowncar.game.Constants.MAX_STEPS;
+import static com.topdowncar.game.Constants.STEP_TIME;
+
+/**
+ * Car physics without any graphics. Holds {@link World}, map geometry and cars, and steps them
+ * with scripted input. Needs only {@link com.badlogic.gdx.Gdx#files} to load the map, so it can
+ * run inside a headless application
+ */
+public class Simulation implements Disposable, WorldStepper.StepListener {
+
+    private static final int SPAWN_COLUMNS = 4;
+    private static final int SPAWN_ROWS = 10;
+    private static final float SPAWN_SPACING_X = 224;
+    private static final float SPAWN_SPACING_Y = 320;
+
+    private final World mWorld;
+    private final MapLoader mMapLoader;
+    private final WorldStepper mStepper;
+    private final VehicleManager mVehicles;
+    private final InputScript mScript;
+    private InputRecorder mRecorder;
+    private AiController mAi;
+    private long mStep;
+
+    /**
+     * Main Simulation constructor
+     * @param carCount number of cars to spawn around player position from the map
+     * @param script {@link InputScript} used to drive the cars
+     */
+    public Simulation(final int carCount, final InputScript script) {
+        this(carCount, script, false);
+    }
+
+    /**
+     * Simulation constructor which can keep only walls around cars in the world, which makes
+     * creating the simulation faster and keeps the broadphase small on big maps
+     * @param carCount number of cars to spawn around player position from the map
+     * @param script {@link InputScript} used to drive the cars
+     * @param streamWalls true to stream walls around cars, false to create all walls up front
+     */
+    public Simulation(final int carCount, final InputScript script, final boolean streamWalls) {
+        this(carCount, script, MapCache.get(MAP_NAME), true, streamWalls);
+    }
+
+    /**
+     * Simulation constructor using the given map instead of the default one, and choosing how its
+     * walls are created
+     * @param carCount number of cars to spawn around player position from the map
+     * @param script {@link InputScript} used to drive the cars
+     * @param mapData map to simulate on, usually received from {@link MapCache}
+     * @param mergeWalls true to merge walls in to fewer rectangles
+     * @param streamWalls true to stream walls around cars, false to create all walls up front
+     */
+    public Simulation(final int carCount, final InputScript script, final MapData mapData, final boolean mergeWalls,
+                      final boolean streamWalls) {
+        mWorld = new World(GRAVITY, true);
+        mMapLoader = new MapLoader(mWorld, mapData, mergeWalls, streamWalls);
+        mStepper = new WorldStepper(mWorld, STEP_TIME, MAX_STEPS, this);
+        mVehicles = new VehicleManager(mWorld, mMapLoader, CarSpecCache.get(DEFAULT_CAR));
+        mScript = script;
+        for (int i = 0; i < carCount; i++) {
+            addCar(i);
+        }
+    }
+
+    /**
+     * Spawning a car on the grid behind player position. Cars are placed in columns across the
+     * road, and once grid is full spots are reused, leaving Box2D to push overlapping cars apart
+     * @param index index of the car
+     * @return slot of the car in {@link VehicleManager}
+     */
+    public int addCar(final int index) {
+        final int spot = index % (SPAWN_COLUMNS * SPAWN_ROWS);
+        final float offsetX = (spot % SPAWN_COLUMNS - (SPAWN_COLUMNS - 1) / 2f) * SPAWN_SPACING_X;
+        final float offsetY = -(spot / SPAWN_COLUMNS) * SPAWN_SPACING_Y;
+        return mVehicles.addCar(offsetX, offsetY);
+    }
+
+    /**
+     * Simulating one fixed step
+     */
+    public void step() {
+        mStepper.update(mStepper.getStepTime());
+    }
+
+    /**
+     * Simulating exactly one step with the given delta
+     * @param delta time to simulate
+     */
+    public void step(final float delta) {
+        mStepper.step(delta);
+    }
+
+    /**
+     * Simulating given number of fixed steps as fast as possible
+     * @param steps number of steps to simulate
+     */
+    public void run(final long steps) {
+        for (long i = 0; i < steps; i++) {
+            step();
+        }
+    }
+
+    @Override
+    public void onStep(final float stepTime) {
+        mMapLoader.streamWalls(mVehicles);
+        final IntArray slots = mVehicles.getActiveSlots();
+        for (int i = 0; i < slots.size; i++) {
+            final int slot = slots.get(i);
+            if (mAi != null && mAi.isDriving(slot)) {
+                continue;
+            }
+            mVehicles.setInput(slot, mScript.getDriveDirection(mStep, slot), mScript.getTurnDirection(mStep, slot));
+        }
+        if (mAi != null) {
+            mAi.update();
+        }
+        if (mRecorder != null) {
+            mRecorder.record(stepTime, mVehicles);
+        }
+        mVehicles.update(stepTime);
+        mStep++;
+    }
+
+    /**
+     * Saving state of all cars and the step counter, so the simulation can be put back to this
+     * moment with {@link #restoreSnapshot(VehicleSnapshot)}
+     * @param snapshot {@link VehicleSnapshot} to save to, reused between saves
+     */
+    public void saveSnapshot(final VehicleSnapshot snapshot) {
+        snapshot.save(mVehicles, mStep);
+    }
+
+    /**
+     * Putting all cars and the step counter back to the saved state, without rebuilding the world
+     * @param snapshot {@link VehicleSnapshot} saved from this simulation, with the same cars
+     */
+    public void restoreSnapshot(final VehicleSnapshot snapshot) {
+        snapshot.restore(mVehicles);
+        mStep = snapshot.getStep();
+    }
+
+    /**
+     * Setting AI controller that drives some of the cars. Script is not used for AI driven cars
+     * @param ai {@link AiController} created for this simulation, or null to drive all cars by script
+     */
+    public void setAiController(final AiController ai) {
+        this.mAi = ai;
+    }
+
+    /**
+     * Setting buffer which records contacts during world steps. Events should be drained after
+     * every {@link #step()}, or the oldest ones are overwritten once the buffer is full
+     * @param events {@link ContactEventBuffer} to use, or null to stop recording contacts
+     */
+    public void setContactEvents(final ContactEventBuffer events) {
+        mWorld.setContactListener(events);
+    }
+
+    /**
+     * Setting recorder that receives input of every car on every step
+     * @param recorder {@link InputRecorder} to use, or null to stop recording
+     */
+    public void setRecorder(final InputRecorder recorder) {
+        this.mRecorder = recorder;
+    }
+
+    /**
+     * Returning number of steps simulated so far
+     * @return step count
+     */
+    public long getStepCount() {
+        return mStep;
+    }
+
+    /**
+     * Returning {@link VehicleManager} holding all cars in this simulation
+     * @return vehicle manager
+     */
+    public VehicleManager getVehicles() {
+        return mVehicles;
+    }
+
+    /**
+     * Returning stepper of this simulation, used to change step settings such as solver iterations
+     * @return world stepper
+     */
+    public WorldStepper getStepper() {
+        return mStepper;
+    }
+
+    /**
+     * Returning map geometry of this simulation
+     * @return map loader
+     */
+    public MapLoader getMapLoader() {
+        return mMapLoader;
+    }
+
+    /**
+     * Returning physics world of this simulation
+     * @return simulation world
+     */
+    public World getWorld() {
+        return mWorld;
+    }
+
+    @Override
+    public void dispose() {
+        mVehicles.dispose();
+        mWorld.dispose();
+        mMapLoader.dispose();
+    }
+}
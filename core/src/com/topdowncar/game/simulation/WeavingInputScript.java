@@ -0,0 +1,38 @@
+package com.topdowncar.game.simulation;
+
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_BACKWARD;
+import static com.topdowncar.game.entities.Car.DRIVE_DIRECTION_FORWARD;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_LEFT;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_NONE;
+import static com.topdowncar.game.entities.Car.TURN_DIRECTION_RIGHT;
+
+/**
+ * Simple deterministic script where cars drive forward while weaving left and right, and
+ * occasionally brake. Every car is shifted in phase so they don't all do the same thing
+ */
+public class WeavingInputScript implements InputScript {
+
+    private static final int TURN_PERIOD = 120;
+    private static final int BRAKE_PERIOD = 600;
+    private static final int BRAKE_LENGTH = 60;
+    private static final int CAR_PHASE = 17;
+
+    @Override
+    public int getDriveDirection(final long step, final int carIndex) {
+        if ((step + carIndex * CAR_PHASE) % BRAKE_PERIOD < BRAKE_LENGTH) {
+            return DRIVE_DIRECTION_BACKWARD;
+        }
+        return DRIVE_DIRECTION_FORWARD;
+    }
+
+    @Override
+    public int getTurnDirection(final long step, final int carIndex) {
+        final long turn = (step + carIndex * CAR_PHASE) % TURN_PERIOD;
+        if (turn < TURN_PERIOD / 4) {
+            return TURN_DIRECTION_LEFT;
+        } else if (turn >= TURN_PERIOD / 2 && turn < TURN_PERIOD * 3 / 4) {
+            return TURN_DIRECTION_RIGHT;
+        }
+        return TURN_DIRECTION_NONE;
+    }
+}
@@ -0,0 +1,173 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.topdowncar.game.tools.MapData.RECTANGLE_SIZE;
+
+/**
+ * Compact binary form of {@link MapData}, written ahead of time by the bake task so the game
+ * doesn't have to parse the Tiled map and merge walls on start. File starts with a header (magic,
+ * version, flags, wall count, merged wall count and spawn count) and is followed by packed rectangles of
+ * walls, merged walls and spawns as floats. Merged wall count can be 0, in which case walls are
+ * merged on load. Files on disk are memory mapped, other files are read in to memory
+ */
+public class BakedMap {
+
+    public static final int MAGIC = 0x5444434D; // "TDCM"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 24;
+    public static final int FLAG_TILE_LAYERS = 1;
+    public static final String EXTENSION = ".bin";
+
+    /**
+     * Main constructor set to private to disable object creation by the user
+     */
+    private BakedMap() {
+    }
+
+    /**
+     * Returning name of the baked file for the map, which is the map name with its extension
+     * replaced by {@link #EXTENSION}
+     * @param mapName name of the Tiled map file
+     * @return baked file name
+     */
+    public static String getBakedName(final String mapName) {
+        final int dot = mapName.lastIndexOf('.');
+        final int slash = mapName.lastIndexOf('/');
+        return (dot > slash ? mapName.substring(0, dot) : mapName) + EXTENSION;
+    }
+
+    /**
+     * Writing map data to the stream
+     * @param data map data to write
+     * @param output stream to write to, closed when done
+     * @param includeMerged true to write merged walls too, false to leave merging to the loader
+     */
+    public static void write(final MapData data, final OutputStream output, final boolean includeMerged) {
+        final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(output));
+        try {
+            final int wallCount = data.getWallCount(false);
+            final int mergedCount = includeMerged ? data.getWallCount(true) : 0;
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(data.hasTileLayers() ? FLAG_TILE_LAYERS : 0);
+            stream.writeInt(wallCount);
+            stream.writeInt(mergedCount);
+            stream.writeInt(data.getSpawnCount());
+            final Rectangle rectangle = new Rectangle();
+            for (int i = 0; i < wallCount; i++) {
+                writeRectangle(stream, data.getWall(i, false, rectangle));
+            }
+            for (int i = 0; i < mergedCount; i++) {
+                writeRectangle(stream, data.getWall(i, true, rectangle));
+            }
+            for (int i = 0; i < data.getSpawnCount(); i++) {
+                writeRectangle(stream, data.getSpawn(i, rectangle));
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not write baked map", e);
+        } finally {
+            StreamUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Writing one rectangle as x, y, width and height
+     * @param stream stream to write to
+     * @param rectangle rectangle to write
+     * @throws IOException if writing fails
+     */
+    private static void writeRectangle(final DataOutputStream stream, final Rectangle rectangle) throws IOException {
+        stream.writeFloat(rectangle.x);
+        stream.writeFloat(rectangle.y);
+        stream.writeFloat(rectangle.width);
+        stream.writeFloat(rectangle.height);
+    }
+
+    /**
+     * Checking if the file is a baked map of the current version, reading only its header
+     * @param file baked map file
+     * @return true if the file can be loaded with {@link #load(FileHandle)}
+     */
+    public static boolean isCurrent(final FileHandle file) {
+        final DataInputStream stream = new DataInputStream(file.read());
+        try {
+            return stream.readInt() == MAGIC && stream.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            StreamUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Loading baked map from the file, memory mapping it when it is a file on disk
+     * @param file baked map file
+     * @return map data
+     */
+    public static MapData load(final FileHandle file) {
+        final File javaFile = file.file();
+        if (file.type() == Files.FileType.Classpath || !javaFile.isFile()) {
+            // assets packed in an archive, such as the APK, can't be mapped
+            return read(ByteBuffer.wrap(file.readBytes()));
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(javaFile, "r");
+            return read(input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length()));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not map baked map " + file, e);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Reading map data from the buffer, starting at its position
+     * @param buffer buffer holding a baked map
+     * @return map data
+     */
+    public static MapData read(final ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new GdxRuntimeException("Not a baked map");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported baked map version " + version + ", expected " + VERSION);
+        }
+        final int flags = buffer.getInt();
+        final int wallCount = buffer.getInt();
+        final int mergedCount = buffer.getInt();
+        final int spawnCount = buffer.getInt();
+        if (wallCount < 0 || mergedCount < 0 || spawnCount < 0
+                || ((long) wallCount + mergedCount + spawnCount) * RECTANGLE_SIZE * 4 != buffer.remaining()) {
+            throw new GdxRuntimeException("Baked map size doesn't match its header");
+        }
+
+        final FloatBuffer floats = buffer.asFloatBuffer();
+        final float[] walls = new float[wallCount * RECTANGLE_SIZE];
+        floats.get(walls);
+        final float[] mergedWalls = mergedCount > 0 ? new float[mergedCount * RECTANGLE_SIZE] : null;
+        if (mergedWalls != null) {
+            floats.get(mergedWalls);
+        }
+        final float[] spawns = new float[spawnCount * RECTANGLE_SIZE];
+        floats.get(spawns);
+        return new MapData(walls, mergedWalls, spawns, (flags & FLAG_TILE_LAYERS) != 0);
+    }
+}
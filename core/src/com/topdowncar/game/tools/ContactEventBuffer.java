@@ -0,0 +1,202 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Manifold;
+import com.badlogic.gdx.physics.box2d.WorldManifold;
+import com.topdowncar.game.BodyHolder;
+
+/**
+ * Contact listener which only copies contact data in to preallocated primitive arrays, so nothing
+ * is allocated and no game code runs inside Box2D callbacks. Events are read after
+ * {@link com.badlogic.gdx.physics.box2d.World#step(float, int, int)} with {@link #drain(Handler)}.
+ * Bodies are identified by {@link BodyHolder#getId()} of their user data, which is the slot for
+ * cars, and {@link #NO_ID} for bodies without a holder, such as walls. Sensor contacts are skipped,
+ * since sensors never push anything. Buffer is a ring: once full, the oldest events are
+ * overwritten and counted as dropped
+ */
+public class ContactEventBuffer implements ContactListener {
+
+    public static final int EVENT_BEGIN = 0;
+    public static final int EVENT_END = 1;
+    public static final int EVENT_IMPACT = 2;
+    public static final int NO_ID = -1;
+
+    /**
+     * Receiving drained events
+     */
+    public interface Handler {
+
+        /**
+         * Called for every buffered event, oldest first
+         * @param type one of EVENT_ values
+         * @param idA ID of the first body
+         * @param idB ID of the second body
+         * @param impulse sum of normal impulses for impact events, 0 for other events
+         * @param x contact point x in world units, or middle between bodies if contact has no points
+         * @param y contact point y in world units, or middle between bodies if contact has no points
+         */
+        void onContactEvent(int type, int idA, int idB, float impulse, float x, float y);
+    }
+
+    private final int mMask;
+    private final float mMinImpulse;
+    private final int[] mTypes;
+    private final int[] mIdsA;
+    private final int[] mIdsB;
+    private final float[] mImpulses;
+    private final float[] mX;
+    private final float[] mY;
+    private int mHead;
+    private int mSize;
+    private long mDropped;
+
+    /**
+     * Main ContactEventBuffer constructor
+     * @param capacity maximum number of events kept between drains, rounded up to a power of two
+     * @param minImpulse impacts with smaller sum of normal impulses are not recorded, so resting
+     *                   contacts don't add an event every step
+     */
+    public ContactEventBuffer(final int capacity, final float minImpulse) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        final int size = MathUtils.nextPowerOfTwo(capacity);
+        this.mMask = size - 1;
+        this.mMinImpulse = minImpulse;
+        mTypes = new int[size];
+        mIdsA = new int[size];
+        mIdsB = new int[size];
+        mImpulses = new float[size];
+        mX = new float[size];
+        mY = new float[size];
+    }
+
+    @Override
+    public void beginContact(final Contact contact) {
+        record(EVENT_BEGIN, contact, 0);
+    }
+
+    @Override
+    public void endContact(final Contact contact) {
+        record(EVENT_END, contact, 0);
+    }
+
+    @Override
+    public void preSolve(final Contact contact, final Manifold oldManifold) {
+
+    }
+
+    @Override
+    public void postSolve(final Contact contact, final ContactImpulse impulse) {
+        final float[] normalImpulses = impulse.getNormalImpulses();
+        float sum = 0;
+        for (int i = 0; i < impulse.getCount(); i++) {
+            sum += normalImpulses[i];
+        }
+        if (sum >= mMinImpulse) {
+            record(EVENT_IMPACT, contact, sum);
+        }
+    }
+
+    /**
+     * Copying contact data in to the next free place of the ring
+     * @param type one of EVENT_ values
+     * @param contact contact from the callback
+     * @param impulse sum of normal impulses
+     */
+    private void record(final int type, final Contact contact, final float impulse) {
+        final Fixture fixtureA = contact.getFixtureA();
+        final Fixture fixtureB = contact.getFixtureB();
+        if (fixtureA.isSensor() || fixtureB.isSensor()) {
+            return;
+        }
+        final int index;
+        if (mSize == mTypes.length) {
+            index = mHead;
+            mHead = (mHead + 1) & mMask;
+            mDropped++;
+        } else {
+            index = (mHead + mSize) & mMask;
+            mSize++;
+        }
+        mTypes[index] = type;
+        mIdsA[index] = getId(fixtureA);
+        mIdsB[index] = getId(fixtureB);
+        mImpulses[index] = impulse;
+
+        final WorldManifold manifold = contact.getWorldManifold();
+        if (manifold.getNumberOfContactPoints() > 0) {
+            final Vector2 point = manifold.getPoints()[0];
+            mX[index] = point.x;
+            mY[index] = point.y;
+        } else {
+            final Vector2 positionA = fixtureA.getBody().getPosition();
+            final Vector2 positionB = fixtureB.getBody().getPosition();
+            mX[index] = (positionA.x + positionB.x) / 2;
+            mY[index] = (positionA.y + positionB.y) / 2;
+        }
+    }
+
+    /**
+     * Finding ID of the body holding the fixture
+     * @param fixture fixture from the contact
+     * @return holder ID, or {@link #NO_ID} if the body has no holder
+     */
+    private static int getId(final Fixture fixture) {
+        final Object userData = fixture.getBody().getUserData();
+        return userData instanceof BodyHolder ? ((BodyHolder) userData).getId() : NO_ID;
+    }
+
+    /**
+     * Passing all buffered events to the handler, oldest first, and emptying the buffer. Must not
+     * be called while the world is stepping
+     * @param handler handler receiving the events
+     * @return number of drained events
+     */
+    public int drain(final Handler handler) {
+        final int count = mSize;
+        for (int i = 0; i < count; i++) {
+            final int index = (mHead + i) & mMask;
+            handler.onContactEvent(mTypes[index], mIdsA[index], mIdsB[index], mImpulses[index], mX[index], mY[index]);
+        }
+        clear();
+        return count;
+    }
+
+    /**
+     * Dropping all buffered events without reading them
+     */
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Returning number of buffered events
+     * @return event count
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Returning number of events the buffer can hold
+     * @return capacity
+     */
+    public int getCapacity() {
+        return mTypes.length;
+    }
+
+    /**
+     * Returning number of events overwritten before they were drained, since creation
+     * @return dropped event count
+     */
+    public long getDroppedCount() {
+        return mDropped;
+    }
+}
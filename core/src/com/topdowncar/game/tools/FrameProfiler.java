@@ -0,0 +1,212 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.StringBuilder;
+
+import java.util.Locale;
+
+/**
+ * Frame time profiler. Measures every phase of the frame with its own {@link PhaseTimer}, and
+ * samples body, contact and joint counts of the world. Statistics are collected over a fixed
+ * interval; when interval ends, a short summary is prepared for on screen display and, if log
+ * file is set, one CSV or JSON line is appended for every phase
+ */
+public class FrameProfiler {
+
+    public static final int PHASE_FRAME = 0;
+    public static final int PHASE_INPUT = 1;
+    public static final int PHASE_LOGIC = 2;
+    public static final int PHASE_STEP = 3;
+    public static final int PHASE_DRAW = 4;
+
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSON = 1;
+
+    private static final String[] PHASE_NAMES = {"frame", "input", "logic", "step", "draw"};
+    private static final String CSV_HEADER = "time,phase,frames,mean_us,p50_us,p90_us,p99_us,max_us,bodies,contacts,max_contacts,joints\n";
+
+    private final PhaseTimer[] mTimers = new PhaseTimer[PHASE_NAMES.length];
+    private final float mInterval;
+    private FileHandle mLogFile;
+    private int mFormat;
+    private final StringBuilder mSummary = new StringBuilder();
+
+    private float mTime;
+    private float mIntervalTime;
+    private int mBodyCount;
+    private int mContactCount;
+    private int mMaxContactCount;
+    private int mJointCount;
+
+    /**
+     * Profiler that only prepares on screen summary
+     * @param interval length of the statistics interval in seconds
+     */
+    public FrameProfiler(final float interval) {
+        this(interval, null, FORMAT_CSV);
+    }
+
+    /**
+     * Profiler that also writes statistics to the log file at the end of every interval
+     * @param interval length of the statistics interval in seconds
+     * @param logFile file to append statistics to, or null to disable logging
+     * @param format {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+     */
+    public FrameProfiler(final float interval, final FileHandle logFile, final int format) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive, got " + interval);
+        }
+        this.mInterval = interval;
+        for (int i = 0; i < mTimers.length; i++) {
+            mTimers[i] = new PhaseTimer(PHASE_NAMES[i]);
+        }
+        setLogFile(logFile, format);
+    }
+
+    /**
+     * Setting file to which statistics are appended at the end of every interval
+     * @param logFile file to append statistics to, or null to disable logging
+     * @param format {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+     */
+    public void setLogFile(final FileHandle logFile, final int format) {
+        this.mLogFile = logFile;
+        this.mFormat = format;
+        if (logFile != null && format == FORMAT_CSV && !logFile.exists()) {
+            logFile.writeString(CSV_HEADER, false);
+        }
+    }
+
+    /**
+     * Checking if statistics are written to the log file
+     * @return true if log file is set
+     */
+    public boolean isLogging() {
+        return mLogFile != null;
+    }
+
+    /**
+     * Starting a new frame
+     */
+    public void beginFrame() {
+        mTimers[PHASE_FRAME].begin();
+    }
+
+    /**
+     * Starting measurement of the phase
+     * @param phase one of PHASE_ values
+     */
+    public void begin(final int phase) {
+        mTimers[phase].begin();
+    }
+
+    /**
+     * Ending measurement of the phase
+     * @param phase one of PHASE_ values
+     */
+    public void end(final int phase) {
+        mTimers[phase].end();
+    }
+
+    /**
+     * Ending the frame, sampling world counts and finishing the interval if it's over
+     * @param world world to sample counts from
+     * @param delta frame delta time
+     */
+    public void endFrame(final World world, final float delta) {
+        mTimers[PHASE_FRAME].end();
+        for (int i = 0; i < mTimers.length; i++) {
+            mTimers[i].commit();
+        }
+        mBodyCount = world.getBodyCount();
+        mContactCount = world.getContactCount();
+        mMaxContactCount = Math.max(mMaxContactCount, mContactCount);
+        mJointCount = world.getJointCount();
+
+        mTime += delta;
+        mIntervalTime += delta;
+        if (mIntervalTime >= mInterval) {
+            finishInterval();
+        }
+    }
+
+    /**
+     * Preparing summary, writing log and starting new interval
+     */
+    private void finishInterval() {
+        mSummary.setLength(0);
+        for (int i = 0; i < mTimers.length; i++) {
+            final PhaseTimer timer = mTimers[i];
+            mSummary.append(String.format(Locale.US, "%-6s mean %6.0f  p99 %6.0f  max %6.0f us\n",
+                    timer.getName(), timer.getMeanMicros(), timer.getPercentileMicros(0.99f), timer.getMaxMicros()));
+        }
+        mSummary.append("bodies ").append(mBodyCount)
+                .append("  contacts ").append(mContactCount)
+                .append("  joints ").append(mJointCount);
+
+        if (mLogFile != null) {
+            mLogFile.writeString(mFormat == FORMAT_JSON ? toJson() : toCsv(), true);
+        }
+
+        for (int i = 0; i < mTimers.length; i++) {
+            mTimers[i].reset();
+        }
+        mMaxContactCount = 0;
+        mIntervalTime = 0;
+    }
+
+    /**
+     * Formatting interval statistics as CSV, one line per phase
+     * @return CSV lines
+     */
+    private String toCsv() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mTimers.length; i++) {
+            final PhaseTimer timer = mTimers[i];
+            builder.append(String.format(Locale.US, "%.3f,%s,%d,%.1f,%.0f,%.0f,%.0f,%.1f,%d,%d,%d,%d\n",
+                    mTime, timer.getName(), timer.getCount(), timer.getMeanMicros(),
+                    timer.getPercentileMicros(0.5f), timer.getPercentileMicros(0.9f), timer.getPercentileMicros(0.99f),
+                    timer.getMaxMicros(), mBodyCount, mContactCount, mMaxContactCount, mJointCount));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formatting interval statistics as one JSON object per line
+     * @return JSON line
+     */
+    private String toJson() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "{\"time\":%.3f,\"bodies\":%d,\"contacts\":%d,\"maxContacts\":%d,\"joints\":%d,\"phases\":{",
+                mTime, mBodyCount, mContactCount, mMaxContactCount, mJointCount));
+        for (int i = 0; i < mTimers.length; i++) {
+            final PhaseTimer timer = mTimers[i];
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(String.format(Locale.US, "\"%s\":{\"frames\":%d,\"mean\":%.1f,\"p50\":%.0f,\"p90\":%.0f,\"p99\":%.0f,\"max\":%.1f}",
+                    timer.getName(), timer.getCount(), timer.getMeanMicros(), timer.getPercentileMicros(0.5f),
+                    timer.getPercentileMicros(0.9f), timer.getPercentileMicros(0.99f), timer.getMaxMicros()));
+        }
+        builder.append("}}\n");
+        return builder.toString();
+    }
+
+    /**
+     * Returning summary of the last finished interval, used for on screen display. Returned
+     * builder is reused, so it must not be kept
+     * @return summary text
+     */
+    public CharSequence getSummary() {
+        return mSummary;
+    }
+
+    /**
+     * Returning timer of the phase
+     * @param phase one of PHASE_ values
+     * @return phase timer
+     */
+    public PhaseTimer getTimer(final int phase) {
+        return mTimers[phase];
+    }
+}
@@ -0,0 +1,72 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Cache of parsed {@link MapData} by map name. Every map file is parsed only once, no matter how
+ * many worlds are created from it. When {@link BakedMap} file of the map is found next to it, it is
+ * loaded instead of parsing the map, unless the map was changed after baking. Safe to use from
+ * more than one thread
+ */
+public class MapCache {
+
+    private static final ObjectMap<String, MapData> sMaps = new ObjectMap<String, MapData>();
+
+    /**
+     * Main constructor set to private to disable object creation by the user
+     */
+    private MapCache() {
+    }
+
+    /**
+     * Getting map data, loading it the first time it is requested
+     * @param mapName name of the Tiled map file
+     * @return parsed map data
+     */
+    public static synchronized MapData get(final String mapName) {
+        MapData data = sMaps.get(mapName);
+        if (data == null) {
+            data = load(mapName);
+            sMaps.put(mapName, data);
+        }
+        return data;
+    }
+
+    /**
+     * Loading baked map if there is an up to date one, or parsing the Tiled map. Files packed in
+     * an archive have no modification time, so their baked map is used whenever it has the current
+     * version
+     * @param mapName name of the Tiled map file
+     * @return loaded map data
+     */
+    private static MapData load(final String mapName) {
+        final FileHandle baked = Gdx.files.internal(BakedMap.getBakedName(mapName));
+        if (baked.exists() && Gdx.files.internal(mapName).lastModified() <= baked.lastModified() && BakedMap.isCurrent(baked)) {
+            return BakedMap.load(baked);
+        }
+        final TiledMap map = new TmxMapLoader().load(mapName);
+        final MapData data = MapData.fromTiledMap(map);
+        map.dispose();
+        return data;
+    }
+
+    /**
+     * Putting already created map data in to the cache, replacing the old one
+     * @param mapName name under which to store the data
+     * @param data map data
+     */
+    public static synchronized void put(final String mapName, final MapData data) {
+        sMaps.put(mapName, data);
+    }
+
+    /**
+     * Removing all cached maps
+     */
+    public static synchronized void clear() {
+        sMaps.clear();
+    }
+}
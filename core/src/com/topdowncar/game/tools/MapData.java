@@ -0,0 +1,251 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Immutable collision geometry of one map: wall rectangles and spawn rectangles, in pixels. Parsed
+ * once and shared by all worlds that use the same map, see {@link MapCache}. Rectangles are stored
+ * packed as x, y, width and height, where x and y are bottom left corner. Also remembers if the map
+ * has tile layers, so screens only load the Tiled map for drawing when there is something to draw
+ */
+public class MapData {
+
+    public static final String MAP_WALL = "wall";
+    public static final String MAP_PLAYER = "player";
+
+    static final int RECTANGLE_SIZE = 4;
+
+    private final float[] mWalls;
+    private final float[] mMergedWalls;
+    private final float[] mSpawns;
+    private final boolean mTileLayers;
+
+    /**
+     * Main MapData constructor. Arrays are copied, so the caller can reuse them
+     * @param walls packed wall rectangles
+     * @param spawns packed spawn rectangles, there must be at least one
+     */
+    public MapData(final float[] walls, final float[] spawns) {
+        this(walls, null, spawns);
+    }
+
+    /**
+     * MapData constructor taking already merged walls, for example read from {@link BakedMap}, so
+     * they don't have to be merged again. Arrays are copied, so the caller can reuse them
+     * @param walls packed wall rectangles
+     * @param mergedWalls packed merged wall rectangles, or null to merge walls now
+     * @param spawns packed spawn rectangles, there must be at least one
+     */
+    public MapData(final float[] walls, final float[] mergedWalls, final float[] spawns) {
+        this(walls, mergedWalls, spawns, false);
+    }
+
+    /**
+     * MapData constructor taking already merged walls and knowing if the map has tile layers.
+     * Arrays are copied, so the caller can reuse them
+     * @param walls packed wall rectangles
+     * @param mergedWalls packed merged wall rectangles, or null to merge walls now
+     * @param spawns packed spawn rectangles, there must be at least one
+     * @param tileLayers true if the map has tile layers to draw
+     */
+    public MapData(final float[] walls, final float[] mergedWalls, final float[] spawns, final boolean tileLayers) {
+        if (walls.length % RECTANGLE_SIZE != 0 || spawns.length % RECTANGLE_SIZE != 0
+                || mergedWalls != null && mergedWalls.length % RECTANGLE_SIZE != 0) {
+            throw new IllegalArgumentException("Rectangle arrays must hold " + RECTANGLE_SIZE + " values per rectangle");
+        }
+        if (spawns.length == 0) {
+            throw new IllegalArgumentException("Map must have at least one spawn rectangle");
+        }
+        mWalls = walls.clone();
+        mSpawns = spawns.clone();
+        mMergedWalls = mergedWalls != null ? mergedWalls.clone() : merge(mWalls);
+        mTileLayers = tileLayers;
+    }
+
+    /**
+     * Reading walls and spawn points from object layers of the Tiled map
+     * @param map loaded Tiled map
+     * @return parsed map data
+     */
+    public static MapData fromTiledMap(final TiledMap map) {
+        return new MapData(readRectangles(map, MAP_WALL), null, readRectangles(map, MAP_PLAYER), hasTileLayers(map));
+    }
+
+    /**
+     * Checking if the Tiled map has any tile layers
+     * @param map loaded Tiled map
+     * @return true if at least one layer is a tile layer
+     */
+    private static boolean hasTileLayers(final TiledMap map) {
+        for (int i = 0; i < map.getLayers().getCount(); i++) {
+            if (map.getLayers().get(i) instanceof TiledMapTileLayer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reading all rectangle objects from the layer
+     * @param map loaded Tiled map
+     * @param layerName name of the object layer
+     * @return packed rectangles
+     */
+    private static float[] readRectangles(final TiledMap map, final String layerName) {
+        final MapLayer layer = map.getLayers().get(layerName);
+        if (layer == null) {
+            throw new GdxRuntimeException("Map has no '" + layerName + "' layer");
+        }
+        final Array<RectangleMapObject> objects = layer.getObjects().getByType(RectangleMapObject.class);
+        final float[] rectangles = new float[objects.size * RECTANGLE_SIZE];
+        for (int i = 0; i < objects.size; i++) {
+            final Rectangle rectangle = objects.get(i).getRectangle();
+            rectangles[i * RECTANGLE_SIZE] = rectangle.x;
+            rectangles[i * RECTANGLE_SIZE + 1] = rectangle.y;
+            rectangles[i * RECTANGLE_SIZE + 2] = rectangle.width;
+            rectangles[i * RECTANGLE_SIZE + 3] = rectangle.height;
+        }
+        return rectangles;
+    }
+
+    /**
+     * Merging wall rectangles that can be replaced by one bigger rectangle: rectangles lying inside
+     * other ones are dropped, and rectangles of the same height (or width) which touch or overlap
+     * on the same row (or column) are joined. Repeated until nothing else can be merged
+     * @param walls packed wall rectangles
+     * @return packed merged rectangles
+     */
+    private static float[] merge(final float[] walls) {
+        final FloatArray merged = new FloatArray(walls);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < merged.size && !changed; i += RECTANGLE_SIZE) {
+                for (int j = i + RECTANGLE_SIZE; j < merged.size && !changed; j += RECTANGLE_SIZE) {
+                    changed = mergePair(merged, i, j);
+                }
+            }
+        }
+        return merged.toArray();
+    }
+
+    /**
+     * Trying to merge two rectangles. On success, first rectangle is replaced with the merged one
+     * and the second one is removed
+     * @param rectangles packed rectangles
+     * @param first index of the first rectangle
+     * @param second index of the second rectangle
+     * @return true if rectangles were merged
+     */
+    private static boolean mergePair(final FloatArray rectangles, final int first, final int second) {
+        final float[] r = rectangles.items;
+        final float ax = r[first];
+        final float ay = r[first + 1];
+        final float aw = r[first + 2];
+        final float ah = r[first + 3];
+        final float bx = r[second];
+        final float by = r[second + 1];
+        final float bw = r[second + 2];
+        final float bh = r[second + 3];
+
+        final boolean sameRow = ay == by && ah == bh && bx <= ax + aw && ax <= bx + bw;
+        final boolean sameColumn = ax == bx && aw == bw && by <= ay + ah && ay <= by + bh;
+        final boolean bInsideA = bx >= ax && by >= ay && bx + bw <= ax + aw && by + bh <= ay + ah;
+        final boolean aInsideB = ax >= bx && ay >= by && ax + aw <= bx + bw && ay + ah <= by + bh;
+        if (!sameRow && !sameColumn && !bInsideA && !aInsideB) {
+            return false;
+        }
+
+        final float minX = Math.min(ax, bx);
+        final float minY = Math.min(ay, by);
+        r[first] = minX;
+        r[first + 1] = minY;
+        r[first + 2] = Math.max(ax + aw, bx + bw) - minX;
+        r[first + 3] = Math.max(ay + ah, by + bh) - minY;
+        rectangles.removeRange(second, second + RECTANGLE_SIZE - 1);
+        return true;
+    }
+
+    /**
+     * Returning if the map has tile layers. Maps without them are drawn from walls only, so the
+     * Tiled map doesn't have to be loaded
+     * @return true if the map has tile layers
+     */
+    public boolean hasTileLayers() {
+        return mTileLayers;
+    }
+
+    /**
+     * Returning number of wall rectangles
+     * @param merged true to count merged rectangles
+     * @return wall count
+     */
+    public int getWallCount(final boolean merged) {
+        return (merged ? mMergedWalls : mWalls).length / RECTANGLE_SIZE;
+    }
+
+    /**
+     * Getting one wall rectangle
+     * @param index wall index
+     * @param merged true to read from merged rectangles
+     * @param out rectangle in which to store the wall
+     * @return out rectangle, for chaining
+     */
+    public Rectangle getWall(final int index, final boolean merged, final Rectangle out) {
+        return get(merged ? mMergedWalls : mWalls, index, out);
+    }
+
+    /**
+     * Returning number of spawn rectangles
+     * @return spawn count
+     */
+    public int getSpawnCount() {
+        return mSpawns.length / RECTANGLE_SIZE;
+    }
+
+    /**
+     * Getting one spawn rectangle
+     * @param index spawn index
+     * @param out rectangle in which to store the spawn
+     * @return out rectangle, for chaining
+     */
+    public Rectangle getSpawn(final int index, final Rectangle out) {
+        return get(mSpawns, index, out);
+    }
+
+    /**
+     * Getting rectangle around all walls and spawns
+     * @param out rectangle in which to store the bounds
+     * @return out rectangle, for chaining
+     */
+    public Rectangle getBounds(final Rectangle out) {
+        get(mSpawns, 0, out);
+        final Rectangle rectangle = new Rectangle();
+        for (int i = 0; i < getWallCount(false); i++) {
+            out.merge(getWall(i, false, rectangle));
+        }
+        for (int i = 1; i < getSpawnCount(); i++) {
+            out.merge(getSpawn(i, rectangle));
+        }
+        return out;
+    }
+
+    /**
+     * Reading rectangle from the packed array
+     * @param rectangles packed rectangles
+     * @param index rectangle index
+     * @param out rectangle in which to store the result
+     * @return out rectangle, for chaining
+     */
+    private static Rectangle get(final float[] rectangles, final int index, final Rectangle out) {
+        final int offset = index * RECTANGLE_SIZE;
+        return out.set(rectangles[offset], rectangles[offset + 1], rectangles[offset + 2], rectangles[offset + 3]);
+    }
+}
@@ -1,45 +1,85 @@
 package com.topdowncar.game.tools;
 
-import com.badlogic.gdx.maps.objects.RectangleMapObject;
-import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.World;
-import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.entities.VehicleManager;
 
+import static com.topdowncar.game.Constants.GRID_CELL_SIZE;
 import static com.topdowncar.game.Constants.MAP_NAME;
+import static com.topdowncar.game.Constants.PPM;
+import static com.topdowncar.game.Constants.WALL_CHUNK_SIZE;
+import static com.topdowncar.game.Constants.WALL_LOAD_RADIUS;
+import static com.topdowncar.game.Constants.WALL_UNLOAD_RADIUS;
 
 public class MapLoader implements Disposable {
 
 
-    private static final String MAP_WALL = "wall";
-    private static final String MAP_PLAYER = "player";
     private static final float OBJECT_DENSITY = 1f;
     private static final float PLAYER_DENSITY = 0.4f;
 
 
     private final World mWorld;
-    private final TiledMap mMap;
+    private final MapData mMapData;
+    private final Rectangle mPlayerRectangle = new Rectangle();
+    private final boolean mMergeWalls;
+    private final SpatialGrid mWallGrid;
+    private final WallStreamer mStreamer;
 
     /**
-     * Main MapLoader constructor
+     * Main MapLoader constructor, creating every wall as a separate body
      * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      */
     public MapLoader(World world) {
+        this(world, MapCache.get(MAP_NAME), false);
+    }
+
+    /**
+     * MapLoader constructor using already parsed map
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * @param mapData parsed map, usually received from {@link MapCache}
+     * @param mergeWalls true to merge walls in to fewer rectangles, all added to one static body
+     */
+    public MapLoader(final World world, final MapData mapData, final boolean mergeWalls) {
+        this(world, mapData, mergeWalls, false);
+    }
+
+    /**
+     * MapLoader constructor which can leave creating wall bodies to {@link WallStreamer}, so only
+     * walls around cars are in the world, see {@link #streamWalls(VehicleManager)}
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * @param mapData parsed map, usually received from {@link MapCache}
+     * @param mergeWalls true to merge walls in to fewer rectangles
+     * @param streamWalls true to create walls only around cars, false to create all of them now
+     */
+    public MapLoader(final World world, final MapData mapData, final boolean mergeWalls, final boolean streamWalls) {
         this.mWorld = world;
-        mMap = new TmxMapLoader().load(MAP_NAME);
-
-        final Array<RectangleMapObject> walls = mMap.getLayers().get(MAP_WALL).getObjects().getByType(RectangleMapObject.class);
-        for (RectangleMapObject rObject : new Array.ArrayIterator<RectangleMapObject>(walls)) {
-            Rectangle rectangle = rObject.getRectangle();
-            ShapeFactory.createRectangle(
-                    new Vector2(rectangle.getX() + rectangle.getWidth() / 2, rectangle.getY() + rectangle.getHeight() / 2), // position
-                    new Vector2(rectangle.getWidth() / 2, rectangle.getHeight() / 2), // size
-                    BodyDef.BodyType.StaticBody, mWorld, OBJECT_DENSITY, false);
+        this.mMapData = mapData;
+        this.mMergeWalls = mergeWalls;
+        mapData.getSpawn(0, mPlayerRectangle);
+        mWallGrid = new SpatialGrid(toWorld(mapData.getBounds(new Rectangle())), GRID_CELL_SIZE);
+
+        mStreamer = streamWalls ? new WallStreamer(world, mapData, mergeWalls, OBJECT_DENSITY,
+                WALL_CHUNK_SIZE, WALL_LOAD_RADIUS, WALL_UNLOAD_RADIUS) : null;
+
+        final Rectangle rectangle = new Rectangle();
+        final Vector2 position = new Vector2();
+        final Vector2 size = new Vector2();
+        final Body wallsBody = mergeWalls && !streamWalls ? ShapeFactory.createBody(position, BodyDef.BodyType.StaticBody, mWorld) : null;
+        for (int i = 0; i < mapData.getWallCount(mergeWalls); i++) {
+            mapData.getWall(i, mergeWalls, rectangle);
+            position.set(rectangle.getX() + rectangle.getWidth() / 2, rectangle.getY() + rectangle.getHeight() / 2);
+            size.set(rectangle.getWidth() / 2, rectangle.getHeight() / 2);
+            if (wallsBody != null) {
+                ShapeFactory.addRectangle(wallsBody, position, size, OBJECT_DENSITY, false, ShapeFactory.ENTITY_WALL);
+            } else if (!streamWalls) {
+                ShapeFactory.createRectangle(position, size, BodyDef.BodyType.StaticBody, mWorld, OBJECT_DENSITY, false, ShapeFactory.ENTITY_WALL);
+            }
+            mWallGrid.insert(i, toWorld(rectangle));
         }
     }
 
@@ -50,16 +90,109 @@ public class MapLoader implements Disposable {
      * @return player rectangle received from map
      */
     public Body getPlayer() {
-        final Rectangle rectangle = mMap.getLayers().get(MAP_PLAYER).getObjects().getByType(RectangleMapObject.class).get(0).getRectangle();
+        return getPlayer(0, 0);
+    }
+
+    /**
+     * Return player main rectangle moved by the given offset, used to spawn more than one car
+     * around player position defined in the map
+     * @param offsetX horizontal offset in pixels
+     * @param offsetY vertical offset in pixels
+     * @return player rectangle received from map
+     */
+    public Body getPlayer(final float offsetX, final float offsetY) {
+        final Rectangle rectangle = getPlayerRectangle();
         return ShapeFactory.createRectangle(
-                new Vector2(rectangle.getX() + rectangle.getWidth() / 2, rectangle.getY() + rectangle.getHeight() / 2), // position
+                new Vector2(rectangle.getX() + rectangle.getWidth() / 2 + offsetX, rectangle.getY() + rectangle.getHeight() / 2 + offsetY), // position
                 new Vector2(rectangle.getWidth() / 2, rectangle.getHeight() / 2), // size
-                BodyDef.BodyType.DynamicBody, mWorld, PLAYER_DENSITY, false);
+                BodyDef.BodyType.DynamicBody, mWorld, PLAYER_DENSITY, false, ShapeFactory.ENTITY_CHASSIS);
+    }
+
+    /**
+     * Return center of the player rectangle from the map
+     * @param out vector in which to store player position, in pixels
+     * @return out vector, for chaining
+     */
+    public Vector2 getPlayerPosition(final Vector2 out) {
+        final Rectangle rectangle = getPlayerRectangle();
+        return out.set(rectangle.getX() + rectangle.getWidth() / 2, rectangle.getY() + rectangle.getHeight() / 2);
     }
 
+    /**
+     * Return player rectangle as defined in the map
+     * @return player rectangle in pixels
+     */
+    private Rectangle getPlayerRectangle() {
+        return mPlayerRectangle;
+    }
+
+    /**
+     * Finding walls near the area
+     * @param area area to search, in world units
+     * @param out array to which indices of found walls are added, to be used with
+     *            {@link #getWallBounds(int, Rectangle)}
+     * @return out array, for chaining
+     */
+    public IntArray queryWalls(final Rectangle area, final IntArray out) {
+        return mWallGrid.query(area, out);
+    }
+
+    /**
+     * Getting wall rectangle
+     * @param index wall index
+     * @param out rectangle in which to store the wall bounds, in world units
+     * @return out rectangle, for chaining
+     */
+    public Rectangle getWallBounds(final int index, final Rectangle out) {
+        return toWorld(mMapData.getWall(index, mMergeWalls, out));
+    }
+
+    /**
+     * Returning number of walls created by this loader
+     * @return wall count
+     */
+    public int getWallCount() {
+        return mMapData.getWallCount(mMergeWalls);
+    }
+
+    /**
+     * Converting rectangle from map pixels to world units, in place
+     * @param rectangle rectangle to convert
+     * @return same rectangle, for chaining
+     */
+    private static Rectangle toWorld(final Rectangle rectangle) {
+        return rectangle.set(rectangle.x / PPM, rectangle.y / PPM, rectangle.width / PPM, rectangle.height / PPM);
+    }
+
+    /**
+     * Creating walls near cars and destroying walls no car is near to any more, when walls are
+     * streamed. Should be called before every world step
+     * @param vehicles cars around which walls are kept
+     */
+    public void streamWalls(final VehicleManager vehicles) {
+        if (mStreamer != null) {
+            mStreamer.update(vehicles);
+        }
+    }
+
+    /**
+     * Returning streamer of the walls
+     * @return wall streamer, or null if all walls were created up front
+     */
+    public WallStreamer getStreamer() {
+        return mStreamer;
+    }
+
+    /**
+     * Return parsed map this loader was created from
+     * @return map data
+     */
+    public MapData getMapData() {
+        return mMapData;
+    }
 
     @Override
     public void dispose() {
-        mMap.dispose();
+        // map data is shared through MapCache, so there is nothing to release here
     }
 }
@@ -0,0 +1,120 @@
+package com.topdowncar.game.tools;
+
+/**
+ * Timer for one phase of the frame. Time measured between {@link #begin()} and {@link #end()}
+ * is summed over the frame, since a phase can run more than once per frame, and
+ * {@link #commit()} adds the frame total to a fixed bucket histogram. Percentiles are read from
+ * the histogram, so nothing is allocated while measuring
+ */
+public class PhaseTimer {
+
+    private static final int BUCKET_MICROS = 50;
+    private static final int BUCKET_COUNT = 400;
+
+    private final String mName;
+    private final int[] mBuckets = new int[BUCKET_COUNT + 1];
+    private long mStart;
+    private long mFrameNanos;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private int mCount;
+
+    /**
+     * Main PhaseTimer constructor
+     * @param name phase name used in reports
+     */
+    public PhaseTimer(final String name) {
+        this.mName = name;
+    }
+
+    /**
+     * Starting measurement
+     */
+    public void begin() {
+        mStart = System.nanoTime();
+    }
+
+    /**
+     * Ending measurement started with {@link #begin()} and adding it to the frame time
+     */
+    public void end() {
+        mFrameNanos += System.nanoTime() - mStart;
+    }
+
+    /**
+     * Adding frame time to the histogram, and starting a new frame
+     */
+    public void commit() {
+        final int bucket = (int) Math.min(mFrameNanos / 1000 / BUCKET_MICROS, BUCKET_COUNT);
+        mBuckets[bucket]++;
+        mTotalNanos += mFrameNanos;
+        mMaxNanos = Math.max(mMaxNanos, mFrameNanos);
+        mCount++;
+        mFrameNanos = 0;
+    }
+
+    /**
+     * Getting time under which the given part of frames were done. Precision is limited by
+     * histogram bucket size, upper bucket edge is reported, capped by the max time
+     * @param percentile value from 0 to 1, for example 0.99 for 99th percentile
+     * @return percentile time in microseconds
+     */
+    public float getPercentileMicros(final float percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        final int target = (int) Math.ceil(percentile * mCount);
+        int count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets[i];
+            if (count >= target) {
+                return Math.min((i + 1) * BUCKET_MICROS, getMaxMicros());
+            }
+        }
+        return mMaxNanos / 1000f;
+    }
+
+    /**
+     * Getting average frame time of the phase
+     * @return average time in microseconds
+     */
+    public float getMeanMicros() {
+        return mCount == 0 ? 0 : mTotalNanos / 1000f / mCount;
+    }
+
+    /**
+     * Getting slowest frame time of the phase
+     * @return max time in microseconds
+     */
+    public float getMaxMicros() {
+        return mMaxNanos / 1000f;
+    }
+
+    /**
+     * Returning number of measured frames
+     * @return frame count
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returning phase name
+     * @return name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Clearing all measured frames
+     */
+    public void reset() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = 0;
+        }
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+        mCount = 0;
+    }
+}
@@ -3,13 +3,57 @@ package com.topdowncar.game.tools;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Filter;
+import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.Joint;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.physics.box2d.joints.PrismaticJointDef;
+import com.badlogic.gdx.physics.box2d.joints.RevoluteJoint;
+import com.badlogic.gdx.physics.box2d.joints.RevoluteJointDef;
+import com.badlogic.gdx.utils.Array;
 
 import static com.topdowncar.game.Constants.PPM;
 
+/**
+ * Factory for bodies, fixtures and joints. Definition objects, including the native
+ * {@link PolygonShape}, are created once and reused for every call, so spawning cars and walls
+ * doesn't allocate new definitions. Since definitions are shared, all methods are synchronized,
+ * which keeps the factory safe when worlds are built on more than one thread. Every fixture gets
+ * collision filter of its entity type, so Box2D doesn't keep contacts nobody uses: wheel sensors
+ * only overlap triggers, walls are only hit by chassis, and fixtures with the same negative group
+ * index, such as parts of one car, never touch each other
+ */
 public class ShapeFactory {
+
+    public static final int ENTITY_CHASSIS = 0;
+    public static final int ENTITY_WHEEL = 1;
+    public static final int ENTITY_WALL = 2;
+    public static final int ENTITY_TRIGGER = 3;
+
+    public static final short CATEGORY_CHASSIS = 0x0001;
+    public static final short CATEGORY_WHEEL = 0x0002;
+    public static final short CATEGORY_WALL = 0x0004;
+    public static final short CATEGORY_TRIGGER = 0x0008;
+    public static final short NO_GROUP = 0;
+
+    private static final short[] CATEGORIES = {CATEGORY_CHASSIS, CATEGORY_WHEEL, CATEGORY_WALL, CATEGORY_TRIGGER};
+    private static final short[] MASKS = {
+            CATEGORY_CHASSIS | CATEGORY_WALL | CATEGORY_TRIGGER, // chassis
+            CATEGORY_TRIGGER, // wheel
+            CATEGORY_CHASSIS, // wall
+            CATEGORY_CHASSIS | CATEGORY_WHEEL // trigger
+    };
+
+    private static final BodyDef BODY_DEF = new BodyDef();
+    private static final FixtureDef FIXTURE_DEF = new FixtureDef();
+    private static final RevoluteJointDef REVOLUTE_JOINT_DEF = new RevoluteJointDef();
+    private static final PrismaticJointDef PRISMATIC_JOINT_DEF = new PrismaticJointDef();
+    private static final Vector2 CENTER = new Vector2();
+    private static final Vector2 VERTEX = new Vector2();
+    private static PolygonShape sShape;
+
     /**
      * Main constructor set to private to disable object creation by the user
      */
@@ -24,27 +68,148 @@ public class ShapeFactory {
      * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
      * @param density body density
      * @param sensor is body sensor or not
+     * @param entity entity type setting collision filter, one of ENTITY_ values
      * @return fully created body with parameters provided
      */
-    public static Body createRectangle(final Vector2 position, final Vector2 size, final BodyDef.BodyType type, final World world, float density, final boolean sensor) {
+    public static synchronized Body createRectangle(final Vector2 position, final Vector2 size, final BodyDef.BodyType type, final World world, float density, final boolean sensor,
+                                                    final int entity) {
+        final Body body = createBody(position, type, world);
+        getShape().setAsBox(size.x / PPM, size.y / PPM);
+        createFixture(body, density, sensor, entity);
+        return body;
+    }
 
-        // define body
-        final BodyDef bdef = new BodyDef();
-        bdef.position.set(position.x / PPM, position.y / PPM);
-        bdef.type = type;
-        final Body body = world.createBody(bdef);
+    /**
+     * Create body without any fixtures, used to hold many fixtures added with
+     * {@link #addRectangle(Body, Vector2, Vector2, float, boolean, int)}
+     * @param position body position
+     * @param type body type (static, dynamic or kinematic)
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * @return created body
+     */
+    public static synchronized Body createBody(final Vector2 position, final BodyDef.BodyType type, final World world) {
+        BODY_DEF.position.set(position.x / PPM, position.y / PPM);
+        BODY_DEF.type = type;
+        return world.createBody(BODY_DEF);
+    }
 
-        // define fixture
-        final PolygonShape shape = new PolygonShape();
-        shape.setAsBox(size.x / PPM, size.y / PPM);
-        final FixtureDef fdef = new FixtureDef();
-        fdef.shape = shape;
-        fdef.density = density;
-        fdef.isSensor = sensor;
-        body.createFixture(fdef);
-        shape.dispose();
+    /**
+     * Add rectangle fixture to already created body
+     * @param body body to which to add the fixture
+     * @param position rectangle center, relative to the body position
+     * @param size rectangle half size
+     * @param density fixture density
+     * @param sensor is fixture sensor or not
+     * @param entity entity type setting collision filter, one of ENTITY_ values
+     */
+    public static synchronized void addRectangle(final Body body, final Vector2 position, final Vector2 size, float density, final boolean sensor, final int entity) {
+        getShape().setAsBox(size.x / PPM, size.y / PPM, CENTER.set(position.x / PPM, position.y / PPM), 0);
+        createFixture(body, density, sensor, entity);
+    }
 
-        return body;
+    /**
+     * Setting group index of every fixture of the body, keeping category and mask. Fixtures with
+     * the same negative group index never collide, which is used to exclude pairs inside one car
+     * @param body body whose fixtures to change
+     * @param group group index, negative to exclude pairs within the group, {@link #NO_GROUP} to
+     *              leave it to category and mask
+     */
+    public static synchronized void setGroup(final Body body, final short group) {
+        final Array<Fixture> fixtures = body.getFixtureList();
+        for (int i = 0; i < fixtures.size; i++) {
+            final Fixture fixture = fixtures.get(i);
+            final Filter filter = fixture.getFilterData();
+            if (filter.groupIndex != group) {
+                filter.groupIndex = group;
+                fixture.setFilterData(filter);
+            }
+        }
     }
 
+    /**
+     * Create revolute joint between two bodies, with angle limits and a motor
+     * @param world world in which to create the joint
+     * @param bodyA first body, usually car chassis
+     * @param bodyB second body, usually a wheel
+     * @param anchor joint anchor in world units
+     * @param lowerAngle lower angle limit in radians
+     * @param upperAngle upper angle limit in radians
+     * @param maxMotorTorque maximum torque of the motor
+     * @return created joint
+     */
+    public static synchronized RevoluteJoint createRevoluteJoint(final World world, final Body bodyA, final Body bodyB, final Vector2 anchor,
+                                                                 final float lowerAngle, final float upperAngle, final float maxMotorTorque) {
+        REVOLUTE_JOINT_DEF.initialize(bodyA, bodyB, anchor);
+        REVOLUTE_JOINT_DEF.enableLimit = true;
+        REVOLUTE_JOINT_DEF.lowerAngle = lowerAngle;
+        REVOLUTE_JOINT_DEF.upperAngle = upperAngle;
+        REVOLUTE_JOINT_DEF.enableMotor = true;
+        REVOLUTE_JOINT_DEF.maxMotorTorque = maxMotorTorque;
+        REVOLUTE_JOINT_DEF.motorSpeed = 0;
+        return (RevoluteJoint) world.createJoint(REVOLUTE_JOINT_DEF);
+    }
+
+    /**
+     * Create prismatic joint between two bodies with zero translation, which holds the bodies
+     * together without letting them turn
+     * @param world world in which to create the joint
+     * @param bodyA first body, usually car chassis
+     * @param bodyB second body, usually a wheel
+     * @param anchor joint anchor in world units
+     * @return created joint
+     */
+    public static synchronized Joint createLockedJoint(final World world, final Body bodyA, final Body bodyB, final Vector2 anchor) {
+        PRISMATIC_JOINT_DEF.initialize(bodyA, bodyB, anchor, CENTER.set(1, 0));
+        PRISMATIC_JOINT_DEF.enableLimit = true;
+        PRISMATIC_JOINT_DEF.lowerTranslation = PRISMATIC_JOINT_DEF.upperTranslation = 0;
+        return world.createJoint(PRISMATIC_JOINT_DEF);
+    }
+
+    /**
+     * Creating fixture on the body from the shared shape
+     * @param body body to which to add the fixture
+     * @param density fixture density
+     * @param sensor is fixture sensor or not
+     * @param entity entity type setting collision filter, one of ENTITY_ values
+     */
+    private static void createFixture(final Body body, final float density, final boolean sensor, final int entity) {
+        FIXTURE_DEF.shape = getShape();
+        FIXTURE_DEF.density = density;
+        FIXTURE_DEF.isSensor = sensor;
+        FIXTURE_DEF.filter.categoryBits = CATEGORIES[entity];
+        FIXTURE_DEF.filter.maskBits = MASKS[entity];
+        FIXTURE_DEF.filter.groupIndex = NO_GROUP;
+        body.createFixture(FIXTURE_DEF);
+    }
+
+    /**
+     * Returning shared shape, creating it on first use. Created lazily since native library must be
+     * loaded before any shape is created. Box2D copies the shape in to every fixture, so it is
+     * never disposed
+     * @return shared polygon shape
+     */
+    private static PolygonShape getShape() {
+        if (sShape == null) {
+            sShape = new PolygonShape();
+        }
+        return sShape;
+    }
+
+    /**
+     * Get half size of the rectangle around the first fixture of the body, in body local space
+     * @param body body with at least one polygon fixture
+     * @param out vector in which to store the half size
+     * @return out vector, for chaining
+     */
+    public static synchronized Vector2 getHalfSize(final Body body, final Vector2 out) {
+        final PolygonShape shape = (PolygonShape) body.getFixtureList().get(0).getShape();
+        float maxX = 0;
+        float maxY = 0;
+        for (int i = 0; i < shape.getVertexCount(); i++) {
+            shape.getVertex(i, VERTEX);
+            maxX = Math.max(maxX, Math.abs(VERTEX.x));
+            maxY = Math.max(maxY, Math.abs(VERTEX.y));
+        }
+        return out.set(maxX, maxY);
+    }
 }
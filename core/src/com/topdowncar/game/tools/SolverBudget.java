@@ -0,0 +1,136 @@
+package com.topdowncar.game.tools;
+
+/**
+ * Adaptive solver iteration count for one world. After every step, {@link WorldStepper} reports
+ * how long {@link com.badlogic.gdx.physics.box2d.World#step(float, int, int)} took and how many
+ * contacts the world had. Step time is smoothed, and every few steps iterations are lowered if
+ * the smoothed time is over the target, or raised if one more iteration is expected to still fit
+ * in the target. A big change of the contact count, like a pile up, means old measurements are no
+ * longer useful, so smoothing starts over from the last step
+ */
+public class SolverBudget {
+
+    private static final int ADJUST_INTERVAL = 30;
+    private static final float SMOOTHING = 0.1f;
+    private static final float HEADROOM = 0.9f;
+    private static final float CONTACT_JUMP = 0.5f;
+    private static final int CONTACT_JUMP_MIN = 8;
+
+    private final float mTargetNanos;
+    private final int mMinVelocityIterations;
+    private final int mMaxVelocityIterations;
+    private final int mMinPositionIterations;
+    private final int mMaxPositionIterations;
+
+    private int mVelocityIterations;
+    private int mPositionIterations;
+    private float mAverageNanos = -1;
+    private int mLastContactCount;
+    private int mStepsSinceAdjust;
+
+    /**
+     * Main SolverBudget constructor. Iterations start at their maximum
+     * @param targetMicros target time of one world step in microseconds
+     * @param minVelocityIterations lowest allowed velocity iterations
+     * @param maxVelocityIterations highest allowed velocity iterations
+     * @param minPositionIterations lowest allowed position iterations
+     * @param maxPositionIterations highest allowed position iterations
+     */
+    public SolverBudget(final float targetMicros, final int minVelocityIterations, final int maxVelocityIterations,
+                        final int minPositionIterations, final int maxPositionIterations) {
+        if (targetMicros <= 0) {
+            throw new IllegalArgumentException("Target time must be positive, got " + targetMicros);
+        }
+        if (minVelocityIterations < 1 || maxVelocityIterations < minVelocityIterations) {
+            throw new IllegalArgumentException("Invalid velocity iteration bounds " + minVelocityIterations + " - " + maxVelocityIterations);
+        }
+        if (minPositionIterations < 1 || maxPositionIterations < minPositionIterations) {
+            throw new IllegalArgumentException("Invalid position iteration bounds " + minPositionIterations + " - " + maxPositionIterations);
+        }
+        this.mTargetNanos = targetMicros * 1000;
+        this.mMinVelocityIterations = minVelocityIterations;
+        this.mMaxVelocityIterations = maxVelocityIterations;
+        this.mMinPositionIterations = minPositionIterations;
+        this.mMaxPositionIterations = maxPositionIterations;
+        this.mVelocityIterations = maxVelocityIterations;
+        this.mPositionIterations = maxPositionIterations;
+    }
+
+    /**
+     * Adding measurement of one world step, and adjusting iterations if it's time to do so
+     * @param stepNanos time world step took in nanoseconds
+     * @param contactCount number of contacts in the world after the step
+     */
+    public void record(final long stepNanos, final int contactCount) {
+        final int contactChange = Math.abs(contactCount - mLastContactCount);
+        if (mAverageNanos < 0 || (contactChange >= CONTACT_JUMP_MIN && contactChange > mLastContactCount * CONTACT_JUMP)) {
+            mAverageNanos = stepNanos;
+        } else {
+            mAverageNanos += (stepNanos - mAverageNanos) * SMOOTHING;
+        }
+        mLastContactCount = contactCount;
+
+        if (++mStepsSinceAdjust < ADJUST_INTERVAL) {
+            return;
+        }
+        mStepsSinceAdjust = 0;
+        if (mAverageNanos > mTargetNanos) {
+            decrease();
+        } else {
+            increase();
+        }
+    }
+
+    /**
+     * Lowering position iterations first, since velocity iterations matter more for joints and
+     * stacking, and then velocity iterations
+     */
+    private void decrease() {
+        if (mPositionIterations > mMinPositionIterations) {
+            mPositionIterations--;
+        } else if (mVelocityIterations > mMinVelocityIterations) {
+            mVelocityIterations--;
+        }
+    }
+
+    /**
+     * Raising velocity iterations first and then position iterations, if the step is expected to
+     * stay under the target. Solver cost is assumed to grow with the iteration count, which
+     * overestimates cost of the whole step, so raising is on the safe side
+     */
+    private void increase() {
+        if (mVelocityIterations < mMaxVelocityIterations) {
+            if (mAverageNanos * (mVelocityIterations + 1) / mVelocityIterations < mTargetNanos * HEADROOM) {
+                mVelocityIterations++;
+            }
+        } else if (mPositionIterations < mMaxPositionIterations) {
+            if (mAverageNanos * (mPositionIterations + 1) / mPositionIterations < mTargetNanos * HEADROOM) {
+                mPositionIterations++;
+            }
+        }
+    }
+
+    /**
+     * Returning velocity iterations to use in the next step
+     * @return velocity iterations
+     */
+    public int getVelocityIterations() {
+        return mVelocityIterations;
+    }
+
+    /**
+     * Returning position iterations to use in the next step
+     * @return position iterations
+     */
+    public int getPositionIterations() {
+        return mPositionIterations;
+    }
+
+    /**
+     * Returning smoothed world step time
+     * @return average step time in microseconds
+     */
+    public float getAverageMicros() {
+        return Math.max(mAverageNanos, 0) / 1000f;
+    }
+}
@@ -0,0 +1,164 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid over a rectangular area, used to quickly find entities near a rectangle. Entities
+ * are identified by non negative int IDs and are stored in every cell their bounds touch. Cells
+ * are linked lists kept in int arrays, so {@link #clear()} and inserting again every frame doesn't
+ * allocate once arrays are big enough. Positions outside of the grid area are put in border cells
+ */
+public class SpatialGrid {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final float mOriginX;
+    private final float mOriginY;
+    private final float mCellSize;
+    private final int mColumns;
+    private final int mRows;
+    private final int[] mCellHeads;
+
+    private int[] mNodeIds = new int[INITIAL_CAPACITY];
+    private int[] mNodeNext = new int[INITIAL_CAPACITY];
+    private int mNodeCount;
+
+    private int[] mQueryStamps = new int[INITIAL_CAPACITY];
+    private int mQueryStamp;
+
+    /**
+     * Main SpatialGrid constructor
+     * @param area area covered by the grid
+     * @param cellSize size of one square cell, in the same units as the area
+     */
+    public SpatialGrid(final Rectangle area, final float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive, got " + cellSize);
+        }
+        this.mOriginX = area.x;
+        this.mOriginY = area.y;
+        this.mCellSize = cellSize;
+        this.mColumns = Math.max(1, (int) Math.ceil(area.width / cellSize));
+        this.mRows = Math.max(1, (int) Math.ceil(area.height / cellSize));
+        this.mCellHeads = new int[mColumns * mRows];
+        clear();
+    }
+
+    /**
+     * Removing all entities
+     */
+    public void clear() {
+        for (int i = 0; i < mCellHeads.length; i++) {
+            mCellHeads[i] = NONE;
+        }
+        mNodeCount = 0;
+    }
+
+    /**
+     * Inserting entity covering a point
+     * @param id entity ID
+     * @param x point x
+     * @param y point y
+     */
+    public void insert(final int id, final float x, final float y) {
+        addNode(id, cellRow(y) * mColumns + cellColumn(x));
+    }
+
+    /**
+     * Inserting entity covering a rectangle
+     * @param id entity ID
+     * @param bounds entity bounds
+     */
+    public void insert(final int id, final Rectangle bounds) {
+        final int minColumn = cellColumn(bounds.x);
+        final int maxColumn = cellColumn(bounds.x + bounds.width);
+        final int minRow = cellRow(bounds.y);
+        final int maxRow = cellRow(bounds.y + bounds.height);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                addNode(id, row * mColumns + column);
+            }
+        }
+    }
+
+    /**
+     * Finding all entities stored in cells touched by the area. Result can contain entities that
+     * are close to the area but don't overlap it, but every entity is reported only once
+     * @param area area to search
+     * @param out array to which found IDs are added
+     * @return out array, for chaining
+     */
+    public IntArray query(final Rectangle area, final IntArray out) {
+        mQueryStamp++;
+        final int minColumn = cellColumn(area.x);
+        final int maxColumn = cellColumn(area.x + area.width);
+        final int minRow = cellRow(area.y);
+        final int maxRow = cellRow(area.y + area.height);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                for (int node = mCellHeads[row * mColumns + column]; node != NONE; node = mNodeNext[node]) {
+                    final int id = mNodeIds[node];
+                    if (mQueryStamps[id] != mQueryStamp) {
+                        mQueryStamps[id] = mQueryStamp;
+                        out.add(id);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adding entity to the front of the cell list
+     * @param id entity ID
+     * @param cell cell index
+     */
+    private void addNode(final int id, final int cell) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Entity ID must not be negative, got " + id);
+        }
+        if (mNodeCount == mNodeIds.length) {
+            mNodeIds = grow(mNodeIds, mNodeCount * 2);
+            mNodeNext = grow(mNodeNext, mNodeCount * 2);
+        }
+        if (id >= mQueryStamps.length) {
+            mQueryStamps = grow(mQueryStamps, Math.max(id + 1, mQueryStamps.length * 2));
+        }
+        mNodeIds[mNodeCount] = id;
+        mNodeNext[mNodeCount] = mCellHeads[cell];
+        mCellHeads[cell] = mNodeCount;
+        mNodeCount++;
+    }
+
+    /**
+     * Getting column of the cell containing x, clamped to the grid
+     * @param x position x
+     * @return column index
+     */
+    private int cellColumn(final float x) {
+        return Math.min(Math.max((int) Math.floor((x - mOriginX) / mCellSize), 0), mColumns - 1);
+    }
+
+    /**
+     * Getting row of the cell containing y, clamped to the grid
+     * @param y position y
+     * @return row index
+     */
+    private int cellRow(final float y) {
+        return Math.min(Math.max((int) Math.floor((y - mOriginY) / mCellSize), 0), mRows - 1);
+    }
+
+    /**
+     * Copying int array to a bigger one
+     * @param array array to copy
+     * @param capacity new array size
+     * @return new array
+     */
+    private static int[] grow(final int[] array, final int capacity) {
+        final int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
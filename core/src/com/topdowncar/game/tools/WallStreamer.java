@@ -0,0 +1,297 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.entities.VehicleManager;
+
+import static com.topdowncar.game.Constants.PPM;
+
+/**
+ * Keeps only walls around cars in the world. Map is split in to square chunks, and every wall is
+ * cut along chunk borders, so each piece belongs to exactly one chunk. Chunk is created as one
+ * static body with a fixture per piece once any car comes within load radius of it, and destroyed
+ * once every car is further than unload radius. Unload radius is bigger, so a car driving along a
+ * chunk border doesn't create and destroy the same chunk over and over. Work done per update
+ * depends only on cars and chunks around them, not on map size
+ */
+public class WallStreamer {
+
+    private static final int RECTANGLE_SIZE = 4;
+
+    private final World mWorld;
+    private final float mDensity;
+    private final float mOriginX;
+    private final float mOriginY;
+    private final float mChunkSize;
+    private final float mLoadRadius;
+    private final float mUnloadRadius;
+    private final int mColumns;
+    private final int mRows;
+    private final int[] mPieceStarts;
+    private final float[] mPieces;
+    private final Body[] mBodies;
+    private final int[] mKeepStamps;
+    private final int[] mLoadStamps;
+    private final IntArray mLoaded = new IntArray();
+    private final IntArray mToLoad = new IntArray();
+    private final Vector2 mPosition = new Vector2();
+    private final Vector2 mSize = new Vector2();
+    private int mStamp;
+    private long mLoadCount;
+    private long mUnloadCount;
+
+    /**
+     * Main WallStreamer constructor. No chunk is loaded until the first
+     * {@link #update(VehicleManager)}
+     * @param world world in which wall bodies are created
+     * @param mapData map from which walls are read
+     * @param merged true to use merged wall rectangles
+     * @param density density of wall fixtures
+     * @param chunkSize size of one square chunk, in world units
+     * @param loadRadius chunk is loaded once a car is this close to it, in world units
+     * @param unloadRadius chunk is unloaded once every car is further than this, in world units
+     */
+    public WallStreamer(final World world, final MapData mapData, final boolean merged, final float density,
+                        final float chunkSize, final float loadRadius, final float unloadRadius) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        }
+        if (loadRadius < 0 || unloadRadius < loadRadius) {
+            throw new IllegalArgumentException("Unload radius " + unloadRadius + " must not be smaller than load radius " + loadRadius);
+        }
+        this.mWorld = world;
+        this.mDensity = density;
+        this.mChunkSize = chunkSize;
+        this.mLoadRadius = loadRadius;
+        this.mUnloadRadius = unloadRadius;
+
+        final Rectangle bounds = mapData.getBounds(new Rectangle());
+        mOriginX = bounds.x / PPM;
+        mOriginY = bounds.y / PPM;
+        mColumns = Math.max(1, (int) Math.ceil(bounds.width / PPM / chunkSize));
+        mRows = Math.max(1, (int) Math.ceil(bounds.height / PPM / chunkSize));
+        final int chunkCount = mColumns * mRows;
+        mBodies = new Body[chunkCount];
+        mKeepStamps = new int[chunkCount];
+        mLoadStamps = new int[chunkCount];
+        mPieceStarts = new int[chunkCount + 1];
+        mPieces = cutWalls(mapData, merged);
+    }
+
+    /**
+     * Cutting walls along chunk borders and grouping pieces by chunk
+     * @param mapData map from which walls are read
+     * @param merged true to use merged wall rectangles
+     * @return packed pieces in pixels, where pieces of chunk i start at mPieceStarts[i]
+     */
+    private float[] cutWalls(final MapData mapData, final boolean merged) {
+        final int chunkCount = mColumns * mRows;
+        final FloatArray[] chunkPieces = new FloatArray[chunkCount];
+        final Rectangle wall = new Rectangle();
+        final float chunkPixels = mChunkSize * PPM;
+        final float originX = mOriginX * PPM;
+        final float originY = mOriginY * PPM;
+        for (int i = 0; i < mapData.getWallCount(merged); i++) {
+            mapData.getWall(i, merged, wall);
+            final int minColumn = clamp((int) ((wall.x - originX) / chunkPixels), mColumns);
+            final int maxColumn = clamp((int) ((wall.x + wall.width - originX) / chunkPixels), mColumns);
+            final int minRow = clamp((int) ((wall.y - originY) / chunkPixels), mRows);
+            final int maxRow = clamp((int) ((wall.y + wall.height - originY) / chunkPixels), mRows);
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    // border chunks reach to infinity, so nothing is cut off at the map edge
+                    final float left = column == 0 ? wall.x : Math.max(wall.x, originX + column * chunkPixels);
+                    final float right = column == mColumns - 1 ? wall.x + wall.width : Math.min(wall.x + wall.width, originX + (column + 1) * chunkPixels);
+                    final float bottom = row == 0 ? wall.y : Math.max(wall.y, originY + row * chunkPixels);
+                    final float top = row == mRows - 1 ? wall.y + wall.height : Math.min(wall.y + wall.height, originY + (row + 1) * chunkPixels);
+                    if (right <= left || top <= bottom) {
+                        continue;
+                    }
+                    final int chunk = row * mColumns + column;
+                    if (chunkPieces[chunk] == null) {
+                        chunkPieces[chunk] = new FloatArray();
+                    }
+                    chunkPieces[chunk].addAll(left, bottom, right - left, top - bottom);
+                }
+            }
+        }
+
+        final FloatArray pieces = new FloatArray();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            mPieceStarts[chunk] = pieces.size / RECTANGLE_SIZE;
+            if (chunkPieces[chunk] != null) {
+                pieces.addAll(chunkPieces[chunk]);
+            }
+        }
+        mPieceStarts[chunkCount] = pieces.size / RECTANGLE_SIZE;
+        return pieces.toArray();
+    }
+
+    /**
+     * Loading chunks near cars and unloading chunks no car is near to any more. Must not be called
+     * while the world is stepping
+     * @param vehicles cars around which walls are kept
+     */
+    public void update(final VehicleManager vehicles) {
+        mStamp++;
+        mToLoad.clear();
+        final IntArray slots = vehicles.getActiveSlots();
+        for (int i = 0; i < slots.size; i++) {
+            final Vector2 position = vehicles.getCar(slots.get(i)).getBody().getPosition();
+            markChunks(position.x, position.y);
+        }
+
+        for (int i = mLoaded.size - 1; i >= 0; i--) {
+            final int chunk = mLoaded.get(i);
+            if (mKeepStamps[chunk] != mStamp) {
+                mWorld.destroyBody(mBodies[chunk]);
+                mBodies[chunk] = null;
+                mLoaded.removeIndex(i);
+                mUnloadCount++;
+            }
+        }
+        for (int i = 0; i < mToLoad.size; i++) {
+            load(mToLoad.get(i));
+        }
+    }
+
+    /**
+     * Marking chunks within unload radius of the point to be kept, and chunks within load radius
+     * to be loaded
+     * @param x point x, in world units
+     * @param y point y, in world units
+     */
+    private void markChunks(final float x, final float y) {
+        final int minColumn = clamp((int) Math.floor((x - mUnloadRadius - mOriginX) / mChunkSize), mColumns);
+        final int maxColumn = clamp((int) Math.floor((x + mUnloadRadius - mOriginX) / mChunkSize), mColumns);
+        final int minRow = clamp((int) Math.floor((y - mUnloadRadius - mOriginY) / mChunkSize), mRows);
+        final int maxRow = clamp((int) Math.floor((y + mUnloadRadius - mOriginY) / mChunkSize), mRows);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                final float distance2 = distance2(x, y, column, row);
+                final int chunk = row * mColumns + column;
+                if (distance2 <= mUnloadRadius * mUnloadRadius) {
+                    mKeepStamps[chunk] = mStamp;
+                }
+                if (distance2 <= mLoadRadius * mLoadRadius && mBodies[chunk] == null && mLoadStamps[chunk] != mStamp
+                        && mPieceStarts[chunk] != mPieceStarts[chunk + 1]) {
+                    mLoadStamps[chunk] = mStamp;
+                    mToLoad.add(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Squared distance from the point to the nearest point of the chunk
+     * @param x point x, in world units
+     * @param y point y, in world units
+     * @param column chunk column
+     * @param row chunk row
+     * @return squared distance, zero if point is inside the chunk
+     */
+    private float distance2(final float x, final float y, final int column, final int row) {
+        final float left = mOriginX + column * mChunkSize;
+        final float bottom = mOriginY + row * mChunkSize;
+        final float dx = axisDistance(x, left, column == 0, column == mColumns - 1);
+        final float dy = axisDistance(y, bottom, row == 0, row == mRows - 1);
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Distance from the value to the chunk range along one axis. Border chunks reach to infinity
+     * on their outer side, the same as their wall pieces
+     * @param value point coordinate
+     * @param start start of the chunk range
+     * @param first true for the first chunk on this axis
+     * @param last true for the last chunk on this axis
+     * @return distance, zero if the value is inside the range
+     */
+    private float axisDistance(final float value, final float start, final boolean first, final boolean last) {
+        if (value < start) {
+            return first ? 0 : start - value;
+        } else if (value > start + mChunkSize) {
+            return last ? 0 : value - start - mChunkSize;
+        }
+        return 0;
+    }
+
+    /**
+     * Creating body of the chunk with all of its pieces. Chunk must have at least one piece
+     * @param chunk chunk index
+     */
+    private void load(final int chunk) {
+        final int start = mPieceStarts[chunk];
+        final int end = mPieceStarts[chunk + 1];
+        final Body body = ShapeFactory.createBody(mPosition.setZero(), BodyDef.BodyType.StaticBody, mWorld);
+        for (int i = start; i < end; i++) {
+            final int offset = i * RECTANGLE_SIZE;
+            mSize.set(mPieces[offset + 2] / 2, mPieces[offset + 3] / 2);
+            mPosition.set(mPieces[offset] + mSize.x, mPieces[offset + 1] + mSize.y);
+            ShapeFactory.addRectangle(body, mPosition, mSize, mDensity, false, ShapeFactory.ENTITY_WALL);
+        }
+        mBodies[chunk] = body;
+        mLoaded.add(chunk);
+        mLoadCount++;
+    }
+
+    /**
+     * Clamping cell index in to the grid
+     * @param index cell index, possibly outside of the grid
+     * @param count number of cells
+     * @return index inside the grid
+     */
+    private static int clamp(final int index, final int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    /**
+     * Returning number of chunks the map is split in to
+     * @return chunk count
+     */
+    public int getChunkCount() {
+        return mColumns * mRows;
+    }
+
+    /**
+     * Returning number of chunks that currently have a body in the world
+     * @return loaded chunk count
+     */
+    public int getLoadedChunkCount() {
+        return mLoaded.size;
+    }
+
+    /**
+     * Returning number of wall pieces in loaded chunks, which is the number of wall fixtures in
+     * the world
+     * @return loaded piece count
+     */
+    public int getLoadedPieceCount() {
+        int count = 0;
+        for (int i = 0; i < mLoaded.size; i++) {
+            count += mPieceStarts[mLoaded.get(i) + 1] - mPieceStarts[mLoaded.get(i)];
+        }
+        return count;
+    }
+
+    /**
+     * Returning how many times chunks were loaded since creation
+     * @return load count
+     */
+    public long getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * Returning how many times chunks were unloaded since creation
+     * @return unload count
+     */
+    public long getUnloadCount() {
+        return mUnloadCount;
+    }
+}
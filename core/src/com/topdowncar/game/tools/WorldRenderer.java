@@ -0,0 +1,222 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.renderers.OrthoCachedTiledMapRenderer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.BodyHolder;
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.entities.Wheel;
+import com.topdowncar.game.network.SnapshotInterpolator;
+
+import static com.topdowncar.game.Constants.PPM;
+
+/**
+ * Game renderer. Tile layers of the map are drawn by {@link OrthoCachedTiledMapRenderer}, and
+ * walls, cars and wheels are drawn in one {@link SpriteBatch} pass from one texture atlas. Only
+ * walls and cars found near the camera view by the spatial index of {@link MapLoader} and
+ * {@link VehicleManager} are drawn, so number of draw calls doesn't grow with number of cars, and
+ * drawing cost depends on what is on screen rather than on map size. Atlas is loaded from
+ * {@link #ATLAS_NAME} if it exists, otherwise simple flat colored regions are generated
+ */
+public class WorldRenderer implements Disposable {
+
+    public static final String ATLAS_NAME = "cars.atlas";
+    public static final String REGION_CHASSIS = "chassis";
+    public static final String REGION_WHEEL = "wheel";
+    public static final String REGION_WALL = "wall";
+
+    private static final int GENERATED_REGION_SIZE = 16;
+    private static final float CULL_MARGIN = 4f;
+    private static final Color CHASSIS_COLOR = new Color(0.85f, 0.15f, 0.1f, 1);
+    private static final Color WHEEL_COLOR = new Color(0.15f, 0.15f, 0.15f, 1);
+    private static final Color WALL_COLOR = new Color(0.5f, 0.5f, 0.55f, 1);
+
+    private final SpriteBatch mBatch;
+    private final TextureAtlas mAtlas;
+    private final TextureRegion mChassisRegion;
+    private final TextureRegion mWheelRegion;
+    private final TextureRegion mWallRegion;
+    private final OrthoCachedTiledMapRenderer mMapRenderer;
+    private final MapLoader mMapLoader;
+    private final Vector2 mPosition = new Vector2();
+    private final Vector2 mLocalPosition = new Vector2();
+    private final Vector3 mTransform = new Vector3();
+    private final Rectangle mView = new Rectangle();
+    private final Rectangle mWall = new Rectangle();
+    private final IntArray mVisible = new IntArray();
+
+    /**
+     * Main WorldRenderer constructor
+     * @param batch batch used to draw cars, not owned by the renderer
+     * @param map Tiled map which tile layers are drawn, or null if there is nothing to draw
+     * @param mapLoader {@link MapLoader} from which walls are drawn
+     */
+    public WorldRenderer(final SpriteBatch batch, final TiledMap map, final MapLoader mapLoader) {
+        this.mBatch = batch;
+        final FileHandle atlasFile = Gdx.files.internal(ATLAS_NAME);
+        mAtlas = atlasFile.exists() ? new TextureAtlas(atlasFile) : generateAtlas();
+        mChassisRegion = findRegion(REGION_CHASSIS);
+        mWheelRegion = findRegion(REGION_WHEEL);
+        mWallRegion = findRegion(REGION_WALL);
+        mMapLoader = mapLoader;
+        mMapRenderer = map == null ? null : new OrthoCachedTiledMapRenderer(map, 1 / PPM);
+    }
+
+    /**
+     * Drawing map, and walls and cars near the camera view
+     * @param camera camera used to view the world
+     * @param vehicles {@link VehicleManager} holding the cars
+     * @param alpha interpolation value between previous and current physics step
+     */
+    public void render(final OrthographicCamera camera, final VehicleManager vehicles, final float alpha) {
+        if (mMapRenderer != null) {
+            mMapRenderer.setView(camera);
+            mMapRenderer.render();
+        }
+
+        final float viewWidth = camera.viewportWidth * camera.zoom;
+        final float viewHeight = camera.viewportHeight * camera.zoom;
+        mView.set(camera.position.x - viewWidth / 2 - CULL_MARGIN, camera.position.y - viewHeight / 2 - CULL_MARGIN,
+                viewWidth + CULL_MARGIN * 2, viewHeight + CULL_MARGIN * 2);
+
+        mBatch.setProjectionMatrix(camera.combined);
+        mBatch.begin();
+
+        mVisible.clear();
+        mMapLoader.queryWalls(mView, mVisible);
+        for (int i = 0; i < mVisible.size; i++) {
+            mMapLoader.getWallBounds(mVisible.get(i), mWall);
+            mBatch.draw(mWallRegion, mWall.x, mWall.y, mWall.width, mWall.height);
+        }
+
+        mVisible.clear();
+        vehicles.queryCars(mView, mVisible);
+        for (int i = 0; i < mVisible.size; i++) {
+            final Car car = vehicles.getCar(mVisible.get(i));
+            for (int j = 0; j < car.getWheels().size; j++) {
+                draw(mWheelRegion, car.getWheels().get(j), alpha);
+            }
+            draw(mChassisRegion, car, alpha);
+        }
+        mBatch.end();
+    }
+
+    /**
+     * Drawing cars of other players at transforms from {@link SnapshotInterpolator}. Remote cars
+     * have no bodies on the client, so they are drawn in the shape of the template car, with
+     * wheels straight. Must be called after {@link #render(OrthographicCamera, VehicleManager, float)}
+     * with the same camera, since it uses the camera view found there
+     * @param interpolator interpolator holding received snapshots
+     * @param skipSlot server slot of the local car, which is drawn from its own body
+     * @param template car which chassis and wheel sizes and wheel positions are used
+     */
+    public void renderRemoteCars(final SnapshotInterpolator interpolator, final int skipSlot, final Car template) {
+        final IntArray slots = interpolator.getSlots();
+        final Vector2 halfSize = template.getHalfSize();
+        mBatch.begin();
+        for (int i = 0; i < slots.size; i++) {
+            final int slot = slots.get(i);
+            if (slot == skipSlot || !interpolator.getTransform(slot, mTransform) || !mView.contains(mTransform.x, mTransform.y)) {
+                continue;
+            }
+            final float cos = MathUtils.cos(mTransform.z);
+            final float sin = MathUtils.sin(mTransform.z);
+            for (int j = 0; j < template.getWheels().size; j++) {
+                final Wheel wheel = template.getWheels().get(j);
+                mLocalPosition.set(template.getBody().getLocalPoint(wheel.getBody().getPosition()));
+                draw(mWheelRegion, wheel.getHalfSize(),
+                        mTransform.x + mLocalPosition.x * cos - mLocalPosition.y * sin,
+                        mTransform.y + mLocalPosition.x * sin + mLocalPosition.y * cos, mTransform.z);
+            }
+            draw(mChassisRegion, halfSize, mTransform.x, mTransform.y, mTransform.z);
+        }
+        mBatch.end();
+    }
+
+    /**
+     * Drawing region stretched over the body rectangle, at interpolated position and angle
+     * @param region region to draw
+     * @param holder body to draw
+     * @param alpha interpolation value between previous and current physics step
+     */
+    private void draw(final TextureRegion region, final BodyHolder holder, final float alpha) {
+        holder.getInterpolatedPosition(alpha, mPosition);
+        draw(region, holder.getHalfSize(), mPosition.x, mPosition.y, holder.getInterpolatedAngle(alpha));
+    }
+
+    /**
+     * Drawing region stretched over a rectangle
+     * @param region region to draw
+     * @param halfSize half size of the rectangle in world units
+     * @param x center x in world units
+     * @param y center y in world units
+     * @param angle angle in radians
+     */
+    private void draw(final TextureRegion region, final Vector2 halfSize, final float x, final float y, final float angle) {
+        mBatch.draw(region,
+                x - halfSize.x, y - halfSize.y,
+                halfSize.x, halfSize.y,
+                halfSize.x * 2, halfSize.y * 2,
+                1, 1,
+                angle * MathUtils.radiansToDegrees);
+    }
+
+    /**
+     * Finding region in the atlas
+     * @param name region name
+     * @return found region
+     */
+    private TextureRegion findRegion(final String name) {
+        final TextureRegion region = mAtlas.findRegion(name);
+        if (region == null) {
+            throw new IllegalArgumentException("Region '" + name + "' not found in " + ATLAS_NAME);
+        }
+        return region;
+    }
+
+    /**
+     * Generating atlas with flat colored regions in one texture, used when there is no atlas file
+     * @return generated atlas
+     */
+    private static TextureAtlas generateAtlas() {
+        final Color[] colors = {CHASSIS_COLOR, WHEEL_COLOR, WALL_COLOR};
+        final String[] names = {REGION_CHASSIS, REGION_WHEEL, REGION_WALL};
+        final Pixmap pixmap = new Pixmap(GENERATED_REGION_SIZE * colors.length, GENERATED_REGION_SIZE, Pixmap.Format.RGBA8888);
+        for (int i = 0; i < colors.length; i++) {
+            pixmap.setColor(colors[i]);
+            pixmap.fillRectangle(i * GENERATED_REGION_SIZE, 0, GENERATED_REGION_SIZE, GENERATED_REGION_SIZE);
+        }
+        final Texture texture = new Texture(pixmap);
+        pixmap.dispose();
+
+        final TextureAtlas atlas = new TextureAtlas();
+        for (int i = 0; i < names.length; i++) {
+            // one pixel inset so linear filtering doesn't bleed neighbouring colors
+            atlas.addRegion(names[i], texture, i * GENERATED_REGION_SIZE + 1, 1, GENERATED_REGION_SIZE - 2, GENERATED_REGION_SIZE - 2);
+        }
+        return atlas;
+    }
+
+    @Override
+    public void dispose() {
+        mAtlas.dispose();
+        if (mMapRenderer != null) {
+            mMapRenderer.dispose();
+        }
+    }
+}
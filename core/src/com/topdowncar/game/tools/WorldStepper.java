@@ -0,0 +1,210 @@
+package com.topdowncar.game.tools;
+
+import com.badlogic.gdx.physics.box2d.World;
+
+import static com.topdowncar.game.Constants.POSITION_ITERATION;
+import static com.topdowncar.game.Constants.VELOCITY_ITERATION;
+
+public class WorldStepper {
+
+    /**
+     * Callback invoked before every physics step, used to run game logic with the same delta as
+     * the world
+     */
+    public interface StepListener {
+        /**
+         * Called right before {@link World#step(float, int, int)}
+         * @param stepTime time that is about to be simulated
+         */
+        void onStep(float stepTime);
+    }
+
+    private final World mWorld;
+    private final StepListener mListener;
+    private boolean mFixedStep = true;
+    private float mStepTime;
+    private int mMaxSteps;
+    private float mAccumulator;
+    private float mAlpha = 1;
+    private FrameProfiler mProfiler;
+    private int mVelocityIterations = VELOCITY_ITERATION;
+    private int mPositionIterations = POSITION_ITERATION;
+    private SolverBudget mBudget;
+
+    /**
+     * Main WorldStepper constructor
+     * @param world {@link com.topdowncar.game.screens.PlayScreen#mWorld} used to control and add physics objects
+     * @param stepTime fixed time of one physics step
+     * @param maxSteps maximum number of steps done in one update, used to catch up after long frames
+     * @param listener {@link StepListener} called before each step
+     */
+    public WorldStepper(final World world, final float stepTime, final int maxSteps, final StepListener listener) {
+        this.mWorld = world;
+        this.mListener = listener;
+        setStepTime(stepTime);
+        setMaxSteps(maxSteps);
+    }
+
+    /**
+     * Advancing simulation by frame delta. In fixed step mode, delta is accumulated and world is
+     * stepped in {@link #mStepTime} chunks, at most {@link #mMaxSteps} times. Time that could not
+     * be caught up is dropped, so one long frame can not cause a chain of expensive updates
+     * @param delta delta time received from {@link com.topdowncar.game.screens.PlayScreen#render(float)}
+     * @return number of steps done
+     */
+    public int update(final float delta) {
+        if (!mFixedStep) {
+            step(delta);
+            mAlpha = 1;
+            return 1;
+        }
+
+        mAccumulator += delta;
+        int steps = 0;
+        while (mAccumulator >= mStepTime && steps < mMaxSteps) {
+            step(mStepTime);
+            mAccumulator -= mStepTime;
+            steps++;
+        }
+        if (mAccumulator >= mStepTime) {
+            mAccumulator %= mStepTime;
+        }
+        mAlpha = mAccumulator / mStepTime;
+        return steps;
+    }
+
+    /**
+     * Doing one physics step with the given time, skipping the accumulator. Used when exact step
+     * times are already known, for example when replaying a recording
+     * @param stepTime time to simulate
+     */
+    public void step(final float stepTime) {
+        if (mProfiler == null) {
+            mListener.onStep(stepTime);
+            stepWorld(stepTime);
+            return;
+        }
+        mProfiler.begin(FrameProfiler.PHASE_LOGIC);
+        mListener.onStep(stepTime);
+        mProfiler.end(FrameProfiler.PHASE_LOGIC);
+        mProfiler.begin(FrameProfiler.PHASE_STEP);
+        stepWorld(stepTime);
+        mProfiler.end(FrameProfiler.PHASE_STEP);
+    }
+
+    /**
+     * Stepping the world with fixed iterations, or with iterations from the solver budget, which
+     * then receives step time and contact count
+     * @param stepTime time to simulate
+     */
+    private void stepWorld(final float stepTime) {
+        if (mBudget == null) {
+            mWorld.step(stepTime, mVelocityIterations, mPositionIterations);
+            return;
+        }
+        final long start = System.nanoTime();
+        mWorld.step(stepTime, mBudget.getVelocityIterations(), mBudget.getPositionIterations());
+        mBudget.record(System.nanoTime() - start, mWorld.getContactCount());
+    }
+
+    /**
+     * Setting fixed solver iterations used when there is no solver budget. Lower values can be used
+     * for worlds that are far away or not visible, where accuracy matters less
+     * @param velocityIterations velocity iterations, at least 1
+     * @param positionIterations position iterations, at least 1
+     */
+    public void setIterations(final int velocityIterations, final int positionIterations) {
+        if (velocityIterations < 1 || positionIterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1, got " + velocityIterations + " and " + positionIterations);
+        }
+        this.mVelocityIterations = velocityIterations;
+        this.mPositionIterations = positionIterations;
+    }
+
+    /**
+     * Setting solver budget that adjusts iterations to keep world step under its target time
+     * @param budget {@link SolverBudget} to use, or null to use fixed iterations
+     */
+    public void setSolverBudget(final SolverBudget budget) {
+        this.mBudget = budget;
+    }
+
+    /**
+     * Returning solver budget
+     * @return {@link SolverBudget} in use, or null if iterations are fixed
+     */
+    public SolverBudget getSolverBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Returning velocity iterations used in the next step
+     * @return velocity iterations
+     */
+    public int getVelocityIterations() {
+        return mBudget == null ? mVelocityIterations : mBudget.getVelocityIterations();
+    }
+
+    /**
+     * Returning position iterations used in the next step
+     * @return position iterations
+     */
+    public int getPositionIterations() {
+        return mBudget == null ? mPositionIterations : mBudget.getPositionIterations();
+    }
+
+    /**
+     * Setting profiler used to measure game logic and world step separately
+     * @param profiler {@link FrameProfiler} to use, or null to disable measuring
+     */
+    public void setProfiler(final FrameProfiler profiler) {
+        this.mProfiler = profiler;
+    }
+
+    /**
+     * Returning interpolation value between previous and current physics state
+     * @return value between 0 (previous state) and 1 (current state)
+     */
+    public float getAlpha() {
+        return mAlpha;
+    }
+
+    /**
+     * Setting fixed step mode. When disabled, world is stepped once with raw frame delta
+     * @param fixedStep true to use fixed step mode
+     */
+    public void setFixedStep(final boolean fixedStep) {
+        this.mFixedStep = fixedStep;
+        mAccumulator = 0;
+    }
+
+    /**
+     * Setting time of one fixed step
+     * @param stepTime fixed step time, must be positive
+     */
+    public void setStepTime(final float stepTime) {
+        if (stepTime <= 0) {
+            throw new IllegalArgumentException("Step time must be positive, got " + stepTime);
+        }
+        this.mStepTime = stepTime;
+    }
+
+    /**
+     * Setting maximum number of catch up steps done in one update
+     * @param maxSteps maximum number of steps, must be at least 1
+     */
+    public void setMaxSteps(final int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Max steps must be at least 1, got " + maxSteps);
+        }
+        this.mMaxSteps = maxSteps;
+    }
+
+    /**
+     * Returning time of one fixed step
+     * @return fixed step time
+     */
+    public float getStepTime() {
+        return mStepTime;
+    }
+}
@@ -3,10 +3,13 @@ package com.topdowncar.game.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.topdowncar.game.CarGame;
+import com.topdowncar.game.network.NetProtocol;
 
 public class DesktopLauncher {
 	public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
-		new LwjglApplication(new CarGame(), config);
+		final String host = arg.length > 0 ? arg[0] : null;
+		final int port = arg.length > 1 ? Integer.parseInt(arg[1]) : NetProtocol.DEFAULT_PORT;
+		new LwjglApplication(new CarGame(host, port), config);
 	}
 }
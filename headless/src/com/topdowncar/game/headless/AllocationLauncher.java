@@ -0,0 +1,82 @@
+package com.topdowncar.game.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.topdowncar.game.simulation.Simulation;
+import com.topdowncar.game.simulation.WeavingInputScript;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checking that a warmed up {@link Simulation} doesn't allocate anything while stepping. Bytes
+ * allocated by the stepping thread are read with {@link com.sun.management.ThreadMXBean} before
+ * and after a batch of steps, and the process exits with status 1 if the difference is not zero,
+ * so the check can fail the build.
+ * Usage: AllocationLauncher [carCount] [warmupSteps] [steps]
+ */
+public class AllocationLauncher extends ApplicationAdapter {
+
+    private static final int DEFAULT_CAR_COUNT = 40;
+    private static final long DEFAULT_WARMUP_STEPS = 20000;
+    private static final long DEFAULT_STEPS = 2000;
+
+    private final int mCarCount;
+    private final long mWarmupSteps;
+    private final long mSteps;
+
+    public AllocationLauncher(final int carCount, final long warmupSteps, final long steps) {
+        this.mCarCount = carCount;
+        this.mWarmupSteps = warmupSteps;
+        this.mSteps = steps;
+    }
+
+    @Override
+    public void create() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            Gdx.app.error("Allocation", "Thread allocation counting is not supported by this JVM");
+            fail();
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final Simulation simulation = new Simulation(mCarCount, new WeavingInputScript());
+        simulation.run(mWarmupSteps);
+
+        // reading the counter can allocate by itself, so that cost is measured and taken away
+        long before = threads.getThreadAllocatedBytes(thread);
+        final long overhead = threads.getThreadAllocatedBytes(thread) - before;
+        before = threads.getThreadAllocatedBytes(thread);
+        simulation.run(mSteps);
+        final long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        Gdx.app.log("Allocation", String.format("cars: %d, warmup steps: %d, measured steps: %d, allocated: %d bytes (%.1f per step)",
+                mCarCount, mWarmupSteps, mSteps, allocated, (double) allocated / mSteps));
+        simulation.dispose();
+        if (allocated != 0) {
+            Gdx.app.error("Allocation", "Stepping a warmed up simulation allocated " + allocated + " bytes, expected 0");
+            fail();
+            return;
+        }
+        Gdx.app.exit();
+    }
+
+    /**
+     * Ending the process with a failure status, which headless application exit doesn't do
+     */
+    private static void fail() {
+        System.exit(1);
+    }
+
+    public static void main(String[] arg) {
+        final int carCount = arg.length > 0 ? Integer.parseInt(arg[0]) : DEFAULT_CAR_COUNT;
+        final long warmupSteps = arg.length > 1 ? Long.parseLong(arg[1]) : DEFAULT_WARMUP_STEPS;
+        final long steps = arg.length > 2 ? Long.parseLong(arg[2]) : DEFAULT_STEPS;
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = -1;
+        new HeadlessApplication(new AllocationLauncher(carCount, warmupSteps, steps), config);
+    }
+}
@@ -0,0 +1,90 @@
+package com.topdowncar.game.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.topdowncar.game.tools.BakedMap;
+import com.topdowncar.game.tools.MapData;
+
+/**
+ * Baking Tiled maps in to {@link BakedMap} files next to them, with merged walls included, and
+ * reporting how long parsing the map took compared to loading the baked file.
+ * Usage: BakeLauncher [mapName]...
+ */
+public class BakeLauncher extends ApplicationAdapter {
+
+    private final String[] mArgs;
+
+    public BakeLauncher(final String[] args) {
+        this.mArgs = args;
+    }
+
+    @Override
+    public void create() {
+        if (mArgs.length == 0) {
+            Gdx.app.error("Bake", "Usage: <mapName>...");
+        }
+        for (int i = 0; i < mArgs.length; i++) {
+            bake(mArgs[i]);
+        }
+        Gdx.app.exit();
+    }
+
+    /**
+     * Parsing the map, writing the baked file and reading it back to check that nothing changed
+     * @param mapName name of the Tiled map file, relative to the assets directory
+     */
+    private void bake(final String mapName) {
+        long start = System.nanoTime();
+        final TiledMap map = new TmxMapLoader().load(mapName);
+        final MapData data = MapData.fromTiledMap(map);
+        map.dispose();
+        final long parseNanos = System.nanoTime() - start;
+
+        final FileHandle file = Gdx.files.local(BakedMap.getBakedName(mapName));
+        BakedMap.write(data, file.write(false), true);
+
+        start = System.nanoTime();
+        final MapData baked = BakedMap.load(file);
+        final long loadNanos = System.nanoTime() - start;
+        check(data, baked);
+        Gdx.app.log("Bake", String.format("%s: %d walls, %d merged, %d spawns, tile layers: %b, %d bytes, parse: %.2f ms, baked load: %.2f ms",
+                file.path(), data.getWallCount(false), data.getWallCount(true), data.getSpawnCount(), data.hasTileLayers(), file.length(),
+                parseNanos / 1e6, loadNanos / 1e6));
+    }
+
+    /**
+     * Checking that the baked map holds the same rectangles as the parsed one
+     * @param expected parsed map
+     * @param actual map read from the baked file
+     */
+    private static void check(final MapData expected, final MapData actual) {
+        final Rectangle a = new Rectangle();
+        final Rectangle b = new Rectangle();
+        boolean same = expected.getSpawnCount() == actual.getSpawnCount() && expected.hasTileLayers() == actual.hasTileLayers();
+        for (int merged = 0; merged < 2 && same; merged++) {
+            same = expected.getWallCount(merged == 1) == actual.getWallCount(merged == 1);
+            for (int i = 0; i < expected.getWallCount(merged == 1) && same; i++) {
+                same = expected.getWall(i, merged == 1, a).equals(actual.getWall(i, merged == 1, b));
+            }
+        }
+        for (int i = 0; i < expected.getSpawnCount() && same; i++) {
+            same = expected.getSpawn(i, a).equals(actual.getSpawn(i, b));
+        }
+        if (!same) {
+            throw new GdxRuntimeException("Baked map differs from the parsed one");
+        }
+    }
+
+    public static void main(String[] arg) {
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = -1;
+        new HeadlessApplication(new BakeLauncher(arg), config);
+    }
+}
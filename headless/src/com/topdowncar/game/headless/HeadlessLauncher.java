@@ -0,0 +1,104 @@
+package com.topdowncar.game.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.topdowncar.game.simulation.ParallelSimulation;
+import com.topdowncar.game.simulation.WeavingInputScript;
+import com.topdowncar.game.tools.SolverBudget;
+import com.topdowncar.game.tools.WorldStepper;
+
+import static com.topdowncar.game.Constants.CHEAP_POSITION_ITERATION;
+import static com.topdowncar.game.Constants.CHEAP_VELOCITY_ITERATION;
+import static com.topdowncar.game.Constants.POSITION_ITERATION;
+import static com.topdowncar.game.Constants.STEP_TIME;
+import static com.topdowncar.game.Constants.VELOCITY_ITERATION;
+
+/**
+ * Runs car simulation without window or GL context and reports how many steps per second it can
+ * do. Usage: HeadlessLauncher [carCount] [steps] [worldCount] [threadCount] [solver] [walls], where
+ * solver is "fixed" for default iterations, "cheap" for lowest iterations, or target step time in
+ * microseconds to let {@link SolverBudget} adjust iterations, and walls is "all" to create every
+ * wall up front or "stream" to keep only walls around cars
+ */
+public class HeadlessLauncher extends ApplicationAdapter {
+
+    private static final int DEFAULT_CAR_COUNT = 10;
+    private static final long DEFAULT_STEPS = 10000;
+    private static final int DEFAULT_WORLD_COUNT = 1;
+    private static final long WARMUP_STEPS = 600;
+    private static final String SOLVER_FIXED = "fixed";
+    private static final String SOLVER_CHEAP = "cheap";
+    private static final String WALLS_ALL = "all";
+    private static final String WALLS_STREAM = "stream";
+
+    private final int mCarCount;
+    private final long mSteps;
+    private final int mWorldCount;
+    private final int mThreadCount;
+    private final String mSolver;
+    private final boolean mStreamWalls;
+
+    public HeadlessLauncher(final int carCount, final long steps, final int worldCount, final int threadCount, final String solver,
+                            final boolean streamWalls) {
+        this.mCarCount = carCount;
+        this.mSteps = steps;
+        this.mWorldCount = worldCount;
+        this.mThreadCount = threadCount;
+        this.mSolver = solver;
+        this.mStreamWalls = streamWalls;
+    }
+
+    @Override
+    public void create() {
+        final ParallelSimulation simulation = new ParallelSimulation(mWorldCount, mCarCount, new WeavingInputScript(), mThreadCount, mStreamWalls);
+        for (int i = 0; i < mWorldCount; i++) {
+            configureSolver(simulation.getSimulations().get(i).getStepper());
+        }
+        simulation.run(WARMUP_STEPS);
+
+        final long start = System.nanoTime();
+        simulation.run(mSteps);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        final double stepsPerSecond = mSteps / seconds;
+        Gdx.app.log("Headless", String.format("worlds: %d, threads: %d, cars per world: %d, steps: %d, solver: %s, walls: %s, time: %.3f s",
+                mWorldCount, simulation.getWorkerCount(), mCarCount, mSteps, mSolver, mStreamWalls ? WALLS_STREAM : WALLS_ALL, seconds));
+        Gdx.app.log("Headless", String.format("steps/s: %.1f, world steps/s: %.1f, car steps/s: %.1f, realtime factor: %.1fx",
+                stepsPerSecond, stepsPerSecond * mWorldCount, stepsPerSecond * mWorldCount * mCarCount, stepsPerSecond * STEP_TIME));
+        for (int i = 0; i < mWorldCount; i++) {
+            final WorldStepper stepper = simulation.getSimulations().get(i).getStepper();
+            Gdx.app.debug("Headless", String.format("world %d average step: %.1f us, iterations: %d/%d", i,
+                    simulation.getAverageStepNanos(i) / 1e3, stepper.getVelocityIterations(), stepper.getPositionIterations()));
+        }
+
+        simulation.dispose();
+        Gdx.app.exit();
+    }
+
+    /**
+     * Setting solver iterations of one world as requested on the command line
+     * @param stepper stepper of the world
+     */
+    private void configureSolver(final WorldStepper stepper) {
+        if (SOLVER_CHEAP.equals(mSolver)) {
+            stepper.setIterations(CHEAP_VELOCITY_ITERATION, CHEAP_POSITION_ITERATION);
+        } else if (!SOLVER_FIXED.equals(mSolver)) {
+            stepper.setSolverBudget(new SolverBudget(Float.parseFloat(mSolver),
+                    CHEAP_VELOCITY_ITERATION, VELOCITY_ITERATION, CHEAP_POSITION_ITERATION, POSITION_ITERATION));
+        }
+    }
+
+    public static void main(String[] arg) {
+        final int carCount = arg.length > 0 ? Integer.parseInt(arg[0]) : DEFAULT_CAR_COUNT;
+        final long steps = arg.length > 1 ? Long.parseLong(arg[1]) : DEFAULT_STEPS;
+        final int worldCount = arg.length > 2 ? Integer.parseInt(arg[2]) : DEFAULT_WORLD_COUNT;
+        final int threadCount = arg.length > 3 ? Integer.parseInt(arg[3]) : Runtime.getRuntime().availableProcessors();
+        final String solver = arg.length > 4 ? arg[4] : SOLVER_FIXED;
+        final boolean streamWalls = arg.length > 5 && WALLS_STREAM.equals(arg[5]);
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = -1;
+        new HeadlessApplication(new HeadlessLauncher(carCount, steps, worldCount, threadCount, solver, streamWalls), config);
+    }
+}
@@ -0,0 +1,129 @@
+package com.topdowncar.game.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.entities.Car;
+import com.topdowncar.game.entities.VehicleManager;
+import com.topdowncar.game.simulation.InputRecorder;
+import com.topdowncar.game.simulation.InputReplay;
+import com.topdowncar.game.simulation.Simulation;
+import com.topdowncar.game.simulation.WeavingInputScript;
+
+/**
+ * Recording scripted input to a file, or replaying a recording and timing every step. Both modes
+ * print a checksum of the final state of all bodies, so it is easy to see that replay ended in
+ * exactly the same state as the recording.
+ * Usage: ReplayLauncher record [file] [carCount] [steps] or ReplayLauncher replay [file]
+ */
+public class ReplayLauncher extends ApplicationAdapter {
+
+    private static final String MODE_RECORD = "record";
+    private static final String MODE_REPLAY = "replay";
+
+    private final String[] mArgs;
+
+    public ReplayLauncher(final String[] args) {
+        this.mArgs = args;
+    }
+
+    @Override
+    public void create() {
+        if (mArgs.length >= 4 && MODE_RECORD.equals(mArgs[0])) {
+            record(mArgs[1], Integer.parseInt(mArgs[2]), Long.parseLong(mArgs[3]));
+        } else if (mArgs.length >= 2 && MODE_REPLAY.equals(mArgs[0])) {
+            replay(mArgs[1]);
+        } else {
+            Gdx.app.error("Replay", "Usage: record <file> <carCount> <steps> | replay <file>");
+        }
+        Gdx.app.exit();
+    }
+
+    /**
+     * Running scripted simulation and recording its input
+     * @param fileName file to record to
+     * @param carCount number of cars
+     * @param steps number of steps to record
+     */
+    private void record(final String fileName, final int carCount, final long steps) {
+        final Simulation simulation = new Simulation(carCount, new WeavingInputScript());
+        final InputRecorder recorder = new InputRecorder(Gdx.files.absolute(fileName).write(false), carCount);
+        simulation.setRecorder(recorder);
+        simulation.run(steps);
+        recorder.close();
+        Gdx.app.log("Replay", String.format("recorded %d steps of %d cars, checksum: %08x", recorder.getStepCount(), carCount, checksum(simulation)));
+        simulation.dispose();
+    }
+
+    /**
+     * Replaying recorded simulation, measuring every step
+     * @param fileName file to replay
+     */
+    private void replay(final String fileName) {
+        final InputReplay replay = new InputReplay(Gdx.files.absolute(fileName).read());
+        final Simulation simulation = new Simulation(replay.getCarCount(), replay);
+
+        final long[] stepNanos = new long[replay.getStepCount()];
+        replay.play(simulation, stepNanos);
+
+        long totalNanos = 0;
+        int slowestStep = 0;
+        for (int i = 0; i < stepNanos.length; i++) {
+            totalNanos += stepNanos[i];
+            if (stepNanos[i] > stepNanos[slowestStep]) {
+                slowestStep = i;
+            }
+        }
+
+        Gdx.app.log("Replay", String.format("replayed %d steps of %d cars in %.3f s, %.1f steps/s",
+                replay.getStepCount(), replay.getCarCount(), totalNanos / 1e9, replay.getStepCount() / (totalNanos / 1e9)));
+        Gdx.app.log("Replay", String.format("slowest step: %d (%.1f us), checksum: %08x", slowestStep, stepNanos.length > 0 ? stepNanos[slowestStep] / 1e3 : 0, checksum(simulation)));
+        simulation.dispose();
+    }
+
+    /**
+     * Calculating hash of slot, position, angle and velocity of every car and wheel body. Cars are
+     * walked in order of active slots, since order of {@link com.badlogic.gdx.physics.box2d.World#getBodies(Array)}
+     * depends on native addresses
+     * @param simulation simulation to hash
+     * @return checksum
+     */
+    private static int checksum(final Simulation simulation) {
+        final VehicleManager vehicles = simulation.getVehicles();
+        final IntArray slots = vehicles.getActiveSlots();
+        int hash = 1;
+        for (int i = 0; i < slots.size; i++) {
+            final Car car = vehicles.getCar(slots.get(i));
+            hash = 31 * hash + slots.get(i);
+            hash = 31 * hash + checksum(car.getBody());
+            for (int j = 0; j < car.getWheels().size; j++) {
+                hash = 31 * hash + checksum(car.getWheels().get(j).getBody());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Calculating hash of position, angle and velocity of one body
+     * @param body body to hash
+     * @return checksum
+     */
+    private static int checksum(final Body body) {
+        int hash = Float.floatToIntBits(body.getPosition().x);
+        hash = 31 * hash + Float.floatToIntBits(body.getPosition().y);
+        hash = 31 * hash + Float.floatToIntBits(body.getAngle());
+        hash = 31 * hash + Float.floatToIntBits(body.getLinearVelocity().x);
+        hash = 31 * hash + Float.floatToIntBits(body.getLinearVelocity().y);
+        return hash;
+    }
+
+    public static void main(String[] arg) {
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = -1;
+        new HeadlessApplication(new ReplayLauncher(arg), config);
+    }
+}
@@ -0,0 +1,217 @@
+package com.topdowncar.game.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.topdowncar.game.network.ClientGame;
+import com.topdowncar.game.network.GameServer;
+import com.topdowncar.game.network.NetProtocol;
+import com.topdowncar.game.network.NetworkClient;
+import com.topdowncar.game.simulation.WeavingInputScript;
+
+import static com.topdowncar.game.Constants.STEP_TIME;
+
+/**
+ * Running authoritative {@link GameServer} in real time, or running server together with stub
+ * clients over loopback and reporting bandwidth and tick time per client, or running one
+ * predicting {@link ClientGame} among stub clients and reporting prediction error and client cost.
+ * Usage: ServerLauncher server [port] [seconds] [walls], ServerLauncher loopback [clientCount] [ticks] [walls]
+ * or ServerLauncher predict [clientCount] [ticks] [walls], where walls is "all" to create every wall
+ * on the server up front or "stream" to keep only walls around cars
+ */
+public class ServerLauncher extends ApplicationAdapter {
+
+    private static final String MODE_SERVER = "server";
+    private static final String MODE_LOOPBACK = "loopback";
+    private static final String MODE_PREDICT = "predict";
+    private static final String WALLS_STREAM = "stream";
+    private static final int DEFAULT_CLIENT_COUNT = 20;
+    private static final int DEFAULT_TICKS = 3600;
+    private static final int REPORT_INTERVAL = 600;
+    private static final int SNAPSHOT_ERROR_INTERVAL = 2;
+
+    private final String[] mArgs;
+
+    public ServerLauncher(final String[] args) {
+        this.mArgs = args;
+    }
+
+    @Override
+    public void create() {
+        final boolean streamWalls = mArgs.length > 3 && WALLS_STREAM.equals(mArgs[3]);
+        if (mArgs.length >= 1 && MODE_SERVER.equals(mArgs[0])) {
+            final int port = mArgs.length > 1 ? Integer.parseInt(mArgs[1]) : NetProtocol.DEFAULT_PORT;
+            final float seconds = mArgs.length > 2 ? Float.parseFloat(mArgs[2]) : Float.MAX_VALUE;
+            serve(port, seconds, streamWalls);
+        } else if (mArgs.length >= 1 && MODE_LOOPBACK.equals(mArgs[0])) {
+            final int clientCount = mArgs.length > 1 ? Integer.parseInt(mArgs[1]) : DEFAULT_CLIENT_COUNT;
+            final int ticks = mArgs.length > 2 ? Integer.parseInt(mArgs[2]) : DEFAULT_TICKS;
+            loopback(clientCount, ticks, streamWalls);
+        } else if (mArgs.length >= 1 && MODE_PREDICT.equals(mArgs[0])) {
+            final int clientCount = mArgs.length > 1 ? Integer.parseInt(mArgs[1]) : DEFAULT_CLIENT_COUNT;
+            final int ticks = mArgs.length > 2 ? Integer.parseInt(mArgs[2]) : DEFAULT_TICKS;
+            predict(clientCount, ticks, streamWalls);
+        } else {
+            Gdx.app.error("Server", "Usage: server [port] [seconds] [walls] | loopback [clientCount] [ticks] [walls] | predict [clientCount] [ticks] [walls]");
+        }
+        Gdx.app.exit();
+    }
+
+    /**
+     * Running server with a fixed real time tick
+     * @param port UDP port to listen on
+     * @param seconds how long to run
+     * @param streamWalls true to keep only walls around cars on the server
+     */
+    private void serve(final int port, final float seconds, final boolean streamWalls) {
+        final GameServer server = new GameServer(port, streamWalls);
+        Gdx.app.log("Server", "listening on port " + server.getPort());
+        final long tickNanos = (long) (STEP_TIME * 1e9);
+        final long ticks = (long) Math.min(seconds / STEP_TIME, Long.MAX_VALUE);
+        long nextTick = System.nanoTime();
+        for (long i = 0; i < ticks; i++) {
+            server.tick();
+            if (server.getTick() % REPORT_INTERVAL == 0) {
+                Gdx.app.log("Server", String.format("tick: %d, clients: %d, sent: %d kB",
+                        server.getTick(), server.getClientCount(), server.getBytesSent() / 1024));
+            }
+            nextTick += tickNanos;
+            final long sleepNanos = nextTick - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        server.dispose();
+    }
+
+    /**
+     * Running server and stub clients in the same thread, as fast as possible, with every client
+     * driving its car with scripted input. Clients update once per server tick, so the result is
+     * the same as with clients running in real time next to the server
+     * @param clientCount number of clients
+     * @param ticks number of server ticks to run
+     * @param streamWalls true to keep only walls around cars on the server
+     */
+    private void loopback(final int clientCount, final int ticks, final boolean streamWalls) {
+        final GameServer server = new GameServer(0, streamWalls);
+        final WeavingInputScript script = new WeavingInputScript();
+        final Array<NetworkClient> clients = new Array<NetworkClient>();
+        for (int i = 0; i < clientCount; i++) {
+            clients.add(new NetworkClient("localhost", server.getPort()));
+        }
+
+        long serverNanos = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < clients.size; i++) {
+                final NetworkClient client = clients.get(i);
+                client.update();
+                if (client.isJoined()) {
+                    client.sendInput(script.getDriveDirection(tick, client.getSlot()), script.getTurnDirection(tick, client.getSlot()));
+                }
+            }
+            final long start = System.nanoTime();
+            server.tick();
+            serverNanos += System.nanoTime() - start;
+        }
+
+        final double seconds = ticks * STEP_TIME;
+        long bytesReceived = 0;
+        int carsSeen = 0;
+        for (int i = 0; i < clients.size; i++) {
+            final NetworkClient client = clients.get(i);
+            client.update();
+            bytesReceived += client.getBytesReceived();
+            carsSeen += client.getLatestFrame().getSlots().size;
+        }
+        Gdx.app.log("Server", String.format("clients: %d, ticks: %d, packets sent: %d, average tick: %.1f us, per client: %.1f us",
+                server.getClientCount(), ticks, server.getPacketsSent(), serverNanos / 1e3 / ticks, serverNanos / 1e3 / ticks / clientCount));
+        Gdx.app.log("Server", String.format("sent: %.1f kB/s, per client: %.2f kB/s, received by clients: %d kB, cars per snapshot: %.1f",
+                server.getBytesSent() / 1024.0 / seconds, server.getBytesSent() / 1024.0 / seconds / clientCount,
+                bytesReceived / 1024, carsSeen / (float) clientCount));
+
+        for (int i = 0; i < clients.size; i++) {
+            clients.get(i).dispose();
+        }
+        server.dispose();
+    }
+
+    /**
+     * Running server with one predicting client and stub clients, all driving with scripted
+     * input. Reports how far prediction was from the server, and how long client steps took
+     * compared to sampling every remote car from the interpolator
+     * @param clientCount number of clients, including the predicting one
+     * @param ticks number of server ticks to run
+     * @param streamWalls true to keep only walls around cars on the server
+     */
+    private void predict(final int clientCount, final int ticks, final boolean streamWalls) {
+        final GameServer server = new GameServer(0, streamWalls);
+        final WeavingInputScript script = new WeavingInputScript();
+        final ClientGame game = new ClientGame("localhost", server.getPort());
+        final Array<NetworkClient> clients = new Array<NetworkClient>();
+        for (int i = 1; i < clientCount; i++) {
+            clients.add(new NetworkClient("localhost", server.getPort()));
+        }
+
+        final Vector3 transform = new Vector3();
+        long clientNanos = 0;
+        long remoteNanos = 0;
+        long remoteCars = 0;
+        double errorSum = 0;
+        float maxError = 0;
+        int errorCount = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < clients.size; i++) {
+                final NetworkClient client = clients.get(i);
+                client.update();
+                if (client.isJoined()) {
+                    client.sendInput(script.getDriveDirection(tick, client.getSlot()), script.getTurnDirection(tick, client.getSlot()));
+                }
+            }
+            final int slot = Math.max(game.getServerSlot(), 0);
+            long start = System.nanoTime();
+            game.tick(script.getDriveDirection(tick, slot), script.getTurnDirection(tick, slot));
+            clientNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final IntArray slots = game.getInterpolator().getSlots();
+            for (int i = 0; i < slots.size; i++) {
+                if (slots.get(i) != game.getServerSlot() && game.getInterpolator().getTransform(slots.get(i), transform)) {
+                    remoteCars++;
+                }
+            }
+            remoteNanos += System.nanoTime() - start;
+
+            server.tick();
+            if (tick % SNAPSHOT_ERROR_INTERVAL == 0 && game.hasLocalCar()) {
+                errorSum += game.getLastErrorDistance();
+                maxError = Math.max(maxError, game.getLastErrorDistance());
+                errorCount++;
+            }
+        }
+
+        Gdx.app.log("Server", String.format("clients: %d, ticks: %d, prediction error average: %.4f m, max: %.4f m",
+                server.getClientCount(), ticks, errorSum / Math.max(errorCount, 1), maxError));
+        Gdx.app.log("Server", String.format("client step: %.1f us, remote cars sampled per tick: %.1f, sampling: %.2f us per tick",
+                clientNanos / 1e3 / ticks, remoteCars / (float) ticks, remoteNanos / 1e3 / ticks));
+
+        for (int i = 0; i < clients.size; i++) {
+            clients.get(i).dispose();
+        }
+        game.dispose();
+        server.dispose();
+    }
+
+    public static void main(String[] arg) {
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = -1;
+        new HeadlessApplication(new ServerLauncher(arg), config);
+    }
+}